@@ -0,0 +1,87 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.MyBetterMap;
+import com.allendowney.thinkdast.MyTreeMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sums every value with a sequential and a parallel stream, to show how
+ * well each Spliterator divides the work.  Run it with `-t 1` and compare
+ * `parallel=true` against `parallel=false` on a machine with several cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregateBenchmark {
+
+    // MyLinearMap and MyBetterMap are left out because building them is quadratic
+    @Param({"MyArrayList", "MyLinkedList", "MyHashMap", "MyTreeMap"})
+    private String impl;
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean parallel;
+
+    private Function<Boolean, LongStream> source;
+
+    @Setup
+    public void setUp() {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            numbers.add(i);
+        }
+        // random insertion order, so the tree is reasonably balanced
+        Collections.shuffle(numbers, new Random(42));
+
+        if (impl.endsWith("List")) {
+            final List<Integer> list = Implementations.newList(impl);
+            list.addAll(numbers);
+            source = p -> StreamSupport.stream(list.spliterator(), p).mapToLong(Integer::longValue);
+            return;
+        }
+        final Map<Integer, Integer> map = Implementations.newMap(impl);
+        for (Integer i : numbers) {
+            map.put(i, i);
+        }
+        source = p -> StreamSupport.stream(entries(map), p).mapToLong(e -> e.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Spliterator<Map.Entry<Integer, Integer>> entries(Map<Integer, Integer> map) {
+        if (map instanceof MyBetterMap) {
+            return ((MyBetterMap<Integer, Integer>) map).entrySpliterator();
+        }
+        return ((MyTreeMap<Integer, Integer>) map).entrySpliterator();
+    }
+
+    @Benchmark
+    public long sum() {
+        return source.apply(parallel).sum();
+    }
+}
@@ -0,0 +1,170 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.ComparableSillyString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up keys whose hash codes are the sum of their characters, like
+ * SillyString, so short keys share a few hundred hash codes at most.
+ * MyLinearMap shows the cost of scanning one long chain.  The hash maps
+ * turn their long chains into trees, so with Comparable keys their scores
+ * should fall slowly as `size` grows rather than in proportion to it.
+ * Keys that are not Comparable can't be ordered within a hash code, so
+ * they show how much of that speedup is lost.
+ * <p>
+ * SillyString and SillyArray print every time they are hashed, which
+ * would swamp the measurement, so `keyType` chooses between quiet copies
+ * of them, with the same hash codes and the same notion of equality, and
+ * ComparableSillyString.  The SillyArray copy hashes and compares a char[]
+ * rather than a String.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int OPS = 1024;
+    private static final int KEY_LENGTH = 5;
+
+    @Param({"MyLinearMap", "MyBetterMap", "MyHashMap", "HashMap"})
+    private String impl;
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    @Param({"SillyString", "SillyArray", "ComparableSillyString"})
+    private String keyType;
+
+    private Object[] keys;
+    private int[] accesses;
+    private Map<Object, Integer> map;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Set<String> words = new HashSet<>();
+        while (words.size() < size) {
+            char[] chars = new char[KEY_LENGTH];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ('a' + random.nextInt(26));
+            }
+            words.add(new String(chars));
+        }
+        keys = new Object[size];
+        int i = 0;
+        for (String word : words) {
+            keys[i++] = makeKey(word);
+        }
+        accesses = KeyDistribution.UNIFORM.accesses(size, OPS, random);
+        map = Implementations.newMap(impl);
+        for (i = 0; i < size; i++) {
+            map.put(keys[i], i);
+        }
+    }
+
+    private Object makeKey(String word) {
+        switch (keyType) {
+            case "SillyString":
+                return new QuietSillyString(word);
+            case "SillyArray":
+                return new QuietSillyArray(word.toCharArray());
+            case "ComparableSillyString":
+                return new ComparableSillyString(word);
+            default:
+                throw new IllegalArgumentException("Unknown key type: " + keyType);
+        }
+    }
+
+    /**
+     * SillyString without the print: equal by contents, hashed by the sum
+     * of its characters, and not Comparable.
+     */
+    private static class QuietSillyString {
+        private final String innerString;
+
+        QuietSillyString(String innerString) {
+            this.innerString = innerString;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof QuietSillyString
+                    && innerString.equals(((QuietSillyString) other).innerString);
+        }
+
+        @Override
+        public int hashCode() {
+            int total = 0;
+            for (int i = 0; i < innerString.length(); i++) {
+                total += innerString.charAt(i);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * SillyArray without the print: a char[] compared with Arrays.equals,
+     * hashed by the sum of its characters, and not Comparable.
+     */
+    private static class QuietSillyArray {
+        private final char[] array;
+
+        QuietSillyArray(char[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof QuietSillyArray
+                    && Arrays.equals(array, ((QuietSillyArray) other).array);
+        }
+
+        @Override
+        public int hashCode() {
+            int total = 0;
+            for (char c : array) {
+                total += c;
+            }
+            return total;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(map.get(keys[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void remove(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(map.remove(keys[i]));
+            map.put(keys[i], i);
+        }
+    }
+}
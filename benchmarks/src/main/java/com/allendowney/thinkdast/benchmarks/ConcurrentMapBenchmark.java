@@ -0,0 +1,109 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.MyConcurrentHashMap;
+import com.allendowney.thinkdast.MyHashMap;
+import com.allendowney.thinkdast.MyLockFreeHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares one map among all benchmark threads, to show how throughput
+ * scales with the number of threads.  Run it with `-t 1`, `-t 2`, `-t 4`
+ * and so on, up to the number of cores, and compare the implementations.
+ * <p>
+ * `merge` counts words the way an indexer would; `get` only reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentMapBenchmark {
+
+    private static final int OPS = 1024;
+
+    @Param({"MyConcurrentHashMap", "MyLockFreeHashMap", "SynchronizedMyHashMap", "ConcurrentHashMap"})
+    private String impl;
+
+    @Param({"10000"})
+    private int size;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private KeyDistribution distribution;
+
+    private String[] keys;
+    private Map<String, Integer> map;
+
+    @Setup
+    public void setUp() {
+        keys = distribution.keys(size, new Random(42));
+        switch (impl) {
+            case "MyConcurrentHashMap":
+                map = new MyConcurrentHashMap<>();
+                break;
+            case "MyLockFreeHashMap":
+                map = new MyLockFreeHashMap<>();
+                break;
+            case "SynchronizedMyHashMap":
+                map = Collections.synchronizedMap(new MyHashMap<String, Integer>());
+                break;
+            case "ConcurrentHashMap":
+                map = new ConcurrentHashMap<>();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown map: " + impl);
+        }
+        for (String key : keys) {
+            map.put(key, 0);
+        }
+    }
+
+    /**
+     * The keys each thread accesses, different for each thread.
+     */
+    @State(Scope.Thread)
+    public static class Accesses {
+        int[] indexes;
+
+        @Setup
+        public void setUp(ConcurrentMapBenchmark benchmark, ThreadParams thread) {
+            indexes = benchmark.distribution.accesses(benchmark.size, OPS,
+                    new Random(thread.getThreadIndex()));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void merge(Accesses accesses, Blackhole bh) {
+        for (int i : accesses.indexes) {
+            bh.consume(map.merge(keys[i], 1, Integer::sum));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Accesses accesses, Blackhole bh) {
+        for (int i : accesses.indexes) {
+            bh.consume(map.get(keys[i]));
+        }
+    }
+}
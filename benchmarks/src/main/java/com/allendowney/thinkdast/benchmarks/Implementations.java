@@ -0,0 +1,73 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.MyArrayList;
+import com.allendowney.thinkdast.MyBTreeMap;
+import com.allendowney.thinkdast.MyBetterMap;
+import com.allendowney.thinkdast.MyFlatHashMap;
+import com.allendowney.thinkdast.MyHashMap;
+import com.allendowney.thinkdast.MyLinearMap;
+import com.allendowney.thinkdast.MyLinkedList;
+import com.allendowney.thinkdast.MyTieredList;
+import com.allendowney.thinkdast.MyTreeMap;
+import com.allendowney.thinkdast.MyUnrolledList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Makes collections by name, so the benchmarks can take the implementation
+ * as a JMH parameter, the same way ListClientExample swaps implementations.
+ */
+final class Implementations {
+
+    private Implementations() {
+    }
+
+    static <E> List<E> newList(String name) {
+        switch (name) {
+            case "MyArrayList":
+                return new MyArrayList<>();
+            case "MyLinkedList":
+                return new MyLinkedList<>();
+            case "MyUnrolledList":
+                return new MyUnrolledList<>();
+            case "MyTieredList":
+                return new MyTieredList<>();
+            case "ArrayList":
+                return new ArrayList<>();
+            case "LinkedList":
+                return new LinkedList<>();
+            default:
+                throw new IllegalArgumentException("Unknown list: " + name);
+        }
+    }
+
+    static <K, V> Map<K, V> newMap(String name) {
+        switch (name) {
+            case "MyLinearMap":
+                return new MyLinearMap<>();
+            case "MyBetterMap":
+                return new MyBetterMap<>();
+            case "MyHashMap":
+                return new MyHashMap<>();
+            case "MyFlatHashMap":
+                return new MyFlatHashMap<>();
+            case "MyTreeMap":
+                return new MyTreeMap<>();
+            case "MyBalancedTreeMap":
+                return new MyTreeMap<>(true);
+            case "MyBTreeMap":
+                return new MyBTreeMap<>();
+            case "HashMap":
+                return new HashMap<>();
+            case "TreeMap":
+                return new TreeMap<>();
+            default:
+                throw new IllegalArgumentException("Unknown map: " + name);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Ways of choosing the keys that go into a collection, and the order in
+ * which they are looked up.
+ */
+public enum KeyDistribution {
+    /**
+     * Random keys, inserted in random order and looked up uniformly.
+     */
+    UNIFORM,
+
+    /**
+     * The same keys as UNIFORM, but lookups follow a Zipfian distribution,
+     * so a few hot keys get most of the traffic.
+     */
+    ZIPFIAN,
+
+    /**
+     * Keys inserted and looked up in ascending order, which is the worst
+     * case for an unbalanced tree.
+     */
+    SORTED,
+
+    /**
+     * Keys made of "Aa" and "BB" blocks, which all have the same
+     * String.hashCode, so every key lands in the same bucket.
+     */
+    COLLIDING;
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * Makes `n` distinct keys, in the order they should be inserted.
+     *
+     * @param n
+     * @param random
+     * @return
+     */
+    public String[] keys(int n, Random random) {
+        String[] keys = new String[n];
+        switch (this) {
+            case SORTED:
+                for (int i = 0; i < n; i++) {
+                    keys[i] = String.format("key%09d", i);
+                }
+                break;
+            case COLLIDING:
+                int blocks = Math.max(1, 32 - Integer.numberOfLeadingZeros(n - 1));
+                for (int i = 0; i < n; i++) {
+                    StringBuilder sb = new StringBuilder(blocks * 2);
+                    for (int b = 0; b < blocks; b++) {
+                        sb.append(((i >>> b) & 1) == 0 ? "Aa" : "BB");
+                    }
+                    keys[i] = sb.toString();
+                }
+                shuffle(keys, random);
+                break;
+            default:
+                Set<String> seen = new HashSet<>();
+                for (int i = 0; i < n; ) {
+                    String key = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+                    if (seen.add(key)) {
+                        keys[i++] = key;
+                    }
+                }
+                break;
+        }
+        return keys;
+    }
+
+    /**
+     * Makes a sequence of `count` indexes in [0, n), in the order the keys
+     * or positions should be accessed.
+     *
+     * @param n
+     * @param count
+     * @param random
+     * @return
+     */
+    public int[] accesses(int n, int count, Random random) {
+        int[] accesses = new int[count];
+        switch (this) {
+            case SORTED:
+                for (int i = 0; i < count; i++) {
+                    accesses[i] = i % n;
+                }
+                break;
+            case ZIPFIAN:
+                // the hot ranks are scattered, so they are not just the first keys inserted
+                int[] rankToIndex = new int[n];
+                for (int i = 0; i < n; i++) {
+                    rankToIndex[i] = i;
+                }
+                shuffle(rankToIndex, random);
+                double[] cdf = zipfCdf(n);
+                for (int i = 0; i < count; i++) {
+                    int rank = Arrays.binarySearch(cdf, random.nextDouble());
+                    if (rank < 0) {
+                        rank = -rank - 1;
+                    }
+                    accesses[i] = rankToIndex[Math.min(rank, n - 1)];
+                }
+                break;
+            default:
+                for (int i = 0; i < count; i++) {
+                    accesses[i] = random.nextInt(n);
+                }
+                break;
+        }
+        return accesses;
+    }
+
+    private static double[] zipfCdf(int n) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    private static void shuffle(Object[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    private static void shuffle(int[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+}
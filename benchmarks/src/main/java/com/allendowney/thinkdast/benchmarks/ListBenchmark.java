@@ -0,0 +1,111 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lists with each other and with the JDK lists.
+ * <p>
+ * The distribution chooses which positions are accessed: SORTED walks the
+ * list from front to back, UNIFORM and ZIPFIAN pick random positions.
+ * `put` is `set` at a position, and `remove` adds the element back at the
+ * same position, so the size of the list stays the same throughout.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+
+    private static final int OPS = 1024;
+
+    @Param({"MyArrayList", "MyLinkedList", "MyUnrolledList", "MyTieredList", "ArrayList", "LinkedList"})
+    private String impl;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SORTED"})
+    private KeyDistribution distribution;
+
+    private Integer[] values;
+    private int[] accesses;
+    private List<Integer> list;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        accesses = distribution.accesses(size, OPS, random);
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        list = build();
+    }
+
+    private List<Integer> build() {
+        List<Integer> list = Implementations.newList(impl);
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(list.get(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void put(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(list.set(i, values[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void remove(Blackhole bh) {
+        for (int i : accesses) {
+            Integer removed = list.remove(i);
+            list.add(i, removed);
+            bh.consume(removed);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : list) {
+            bh.consume(value);
+        }
+    }
+
+    /**
+     * Builds a list of `size` elements from scratch by appending.
+     */
+    @Benchmark
+    public List<Integer> bulkBuild() {
+        return build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the maps with each other and with the JDK maps.
+ * <p>
+ * `get`, `put` and `remove` each perform OPS operations per invocation on
+ * keys chosen by the distribution, so the scores are operations per second.
+ * `put` overwrites existing keys and `remove` puts each key back, so the
+ * size of the map stays the same throughout.  Every map in `impl` has to
+ * support remove, including the unbalanced MyTreeMap.
+ * <p>
+ * Iteration goes through keySet, which every map returns as a view.
+ * <p>
+ * For memory per entry, divide the `gc.alloc.rate.norm` of `bulkBuild` by
+ * the size: it counts every byte allocated to build the map, including the
+ * tables it outgrew.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    private static final int OPS = 1024;
+
+    @Param({"MyLinearMap", "MyBetterMap", "MyHashMap", "MyFlatHashMap", "MyTreeMap", "MyBalancedTreeMap", "MyBTreeMap", "HashMap", "TreeMap"})
+    private String impl;
+
+    @Param({"100", "10000"})
+    private int size;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SORTED", "COLLIDING"})
+    private KeyDistribution distribution;
+
+    private String[] keys;
+    private Integer[] values;
+    private int[] accesses;
+    private Map<String, Integer> map;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keys = distribution.keys(size, random);
+        accesses = distribution.accesses(size, OPS, random);
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        map = build();
+    }
+
+    private Map<String, Integer> build() {
+        Map<String, Integer> map = Implementations.newMap(impl);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(map.get(keys[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void put(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(map.put(keys[i], values[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void remove(Blackhole bh) {
+        for (int i : accesses) {
+            bh.consume(map.remove(keys[i]));
+            map.put(keys[i], values[i]);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (String key : map.keySet()) {
+            bh.consume(key);
+        }
+    }
+
+    /**
+     * Builds a map of `size` entries from scratch, in insertion order.
+     */
+    @Benchmark
+    public Map<String, Integer> bulkBuild() {
+        return build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.MyArrayList;
+import com.allendowney.thinkdast.MyIntArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a MyIntArrayList and a MyArrayList<Integer> with `size` ints.
+ * <p>
+ * Run through BenchmarkMain, `gc.alloc.rate.norm` is the bytes allocated
+ * to build each list, including the arrays thrown away as it grows; the
+ * boxed list also allocates an Integer for every value above 127.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrimitiveListBenchmark {
+
+    @Param({"10000000"})
+    private int size;
+
+    @Benchmark
+    public MyIntArrayList fillInts() {
+        MyIntArrayList list = new MyIntArrayList();
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Integer> fillBoxed() {
+        List<Integer> list = new MyArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
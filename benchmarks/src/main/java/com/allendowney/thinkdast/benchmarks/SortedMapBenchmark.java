@@ -0,0 +1,142 @@
+package com.allendowney.thinkdast.benchmarks;
+
+import com.allendowney.thinkdast.MyBTreeMap;
+import com.allendowney.thinkdast.MyTreeMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sorted maps on dictionaries too big for the CPU caches,
+ * where a lookup in a binary tree misses the cache at nearly every level.
+ * <p>
+ * The keys are the even numbers from 0 to 2 * size, so half of the keys
+ * `get` looks up are missing.  `get` does OPS random lookups; `scan`
+ * iterates the entries in a range of SCAN keys from a random start.
+ * MyTreeMap is balanced, and MyBTreeMap is bulk loaded.
+ * <p>
+ * 50M keys need a heap of about 8 GB; on a smaller machine, run with
+ * `-p size=1000000,10000000`.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx10g")
+public class SortedMapBenchmark {
+
+    private static final int OPS = 1024;
+    private static final int SCAN = 100;
+
+    @Param({"MyTreeMap", "MyBTreeMap", "TreeMap"})
+    private String impl;
+
+    @Param({"1000000", "10000000", "50000000"})
+    private int size;
+
+    private Integer[] lookups;
+    private Integer[] starts;
+    private NavigableMap<Integer, Integer> navigable;    // MyTreeMap or TreeMap
+    private MyBTreeMap<Integer, Integer> btree;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lookups = new Integer[OPS];
+        starts = new Integer[OPS];
+        for (int i = 0; i < OPS; i++) {
+            lookups[i] = random.nextInt(2 * size);
+            starts[i] = random.nextInt(2 * size);
+        }
+        switch (impl) {
+            case "MyTreeMap":
+                navigable = new MyTreeMap<>(true);
+                break;
+            case "TreeMap":
+                navigable = new TreeMap<>();
+                break;
+            case "MyBTreeMap":
+                btree = MyBTreeMap.fromSorted(new SortedEntries(size));
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown map: " + impl);
+        }
+        for (Iterator<Map.Entry<Integer, Integer>> it = new SortedEntries(size); it.hasNext(); ) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            navigable.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * The entries (2i, i) for i from 0 to n, in order.
+     */
+    private static class SortedEntries implements Iterator<Map.Entry<Integer, Integer>> {
+        private final int n;
+        private int i = 0;
+
+        SortedEntries(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < n;
+        }
+
+        @Override
+        public Map.Entry<Integer, Integer> next() {
+            Map.Entry<Integer, Integer> entry = new AbstractMap.SimpleImmutableEntry<>(2 * i, i);
+            i++;
+            return entry;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void get(Blackhole bh) {
+        if (btree != null) {
+            for (Integer key : lookups) {
+                bh.consume(btree.get(key));
+            }
+        } else {
+            for (Integer key : lookups) {
+                bh.consume(navigable.get(key));
+            }
+        }
+    }
+
+    /**
+     * Scans OPS ranges; divide the score by SCAN / 2 for entries per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPS)
+    public void scan(Blackhole bh) {
+        for (Integer start : starts) {
+            Iterable<Map.Entry<Integer, Integer>> range = btree != null
+                    ? btree.range(start, start + SCAN)
+                    : navigable.subMap(start, start + SCAN).entrySet();
+            for (Map.Entry<Integer, Integer> entry : range) {
+                bh.consume(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.allendowney.thinkdast;
+
+/**
+ * A string with SillyString's hash code, the sum of its characters, but
+ * Comparable and quiet: it doesn't print when it is hashed.
+ * <p>
+ * Anagrams collide, so it is useful for measuring and testing maps full
+ * of equal hash codes, and since it is Comparable, HashBucket can still
+ * find it in O(log n).
+ */
+public class ComparableSillyString implements Comparable<ComparableSillyString> {
+    private final String innerString;
+
+    public ComparableSillyString(String innerString) {
+        this.innerString = innerString;
+    }
+
+    public String toString() {
+        return innerString;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ComparableSillyString
+                && innerString.equals(((ComparableSillyString) other).innerString);
+    }
+
+    @Override
+    public int hashCode() {
+        int total = 0;
+        for (int i = 0; i < innerString.length(); i++) {
+            total += innerString.charAt(i);
+        }
+        return total;
+    }
+
+    @Override
+    public int compareTo(ComparableSillyString other) {
+        return innerString.compareTo(other.innerString);
+    }
+}
@@ -0,0 +1,339 @@
+package com.allendowney.thinkdast;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.TreeMap;
+
+/**
+ * A sub-map of MyBetterMap that is a MyLinearMap while it is short, and
+ * becomes a balanced tree when a bad hash function puts many keys in it.
+ * <p>
+ * Once the bucket has more than TREEIFY_THRESHOLD entries, keys whose
+ * class implements Comparable of itself go in a red-black tree
+ * (java.util.TreeMap) ordered by hash code, then by class, then by
+ * compareTo, so they can be found in O(log n) even if their hash codes are
+ * all the same.  A key that compareTo says is the same as a key in the
+ * tree, but that is not equal to it, can't go in the tree too, so it goes
+ * with the other keys.  Other keys, and
+ * null, can only be told apart by equals, so they go in a tree of
+ * MyLinearMap keyed by hash code: O(log n) to find the hash code, then a
+ * scan of the keys that share it.  Java's HashMap has the same limit.  So
+ * keys that are not Comparable and have equal hash codes, like the
+ * anagrams of a SillyString, get no speedup from the tree: finding one
+ * still scans all of them.
+ * When the bucket shrinks to UNTREEIFY_THRESHOLD entries, it goes back to
+ * being a list.
+ *
+ * @param <K>
+ * @param <V>
+ */
+class HashBucket<K, V> extends MyLinearMap<K, V> {
+
+    // more entries than this, and the bucket becomes a tree
+    static final int TREEIFY_THRESHOLD = 8;
+
+    // this many entries or fewer, and the tree goes back to a list;
+    // lower than TREEIFY_THRESHOLD, so a bucket doesn't flip back and forth
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    private static final Comparator<Object> ORDER = new Comparator<Object>() {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        public int compare(Object a, Object b) {
+            int cmp = Integer.compare(a.hashCode(), b.hashCode());
+            if (cmp != 0) {
+                return cmp;
+            }
+            if (a.getClass() != b.getClass()) {
+                return a.getClass().getName().compareTo(b.getClass().getName());
+            }
+            return ((Comparable) a).compareTo(b);
+        }
+    };
+
+    // whether keys of a class can go in the tree: the class has to implement
+    // Comparable of itself, the same test java.util.HashMap makes
+    private static final ClassValue<Boolean> SELF_COMPARABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> c) {
+            if (c == String.class) {
+                return true;
+            }
+            for (Type type : c.getGenericInterfaces()) {
+                if (type instanceof ParameterizedType) {
+                    ParameterizedType p = (ParameterizedType) type;
+                    Type[] args = p.getActualTypeArguments();
+                    if (p.getRawType() == Comparable.class && args.length == 1 && args[0] == c) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    };
+
+    private TreeMap<K, V> tree;                          // Comparable keys, or null while a list
+    private TreeMap<Integer, MyLinearMap<K, V>> others;  // other keys, by hash code
+    private int size;                                    // entries in the trees
+
+    /**
+     * Returns true if the bucket is a tree, for testing.
+     *
+     * @return
+     */
+    boolean isTree() {
+        return tree != null;
+    }
+
+    private static boolean inTree(Object key) {
+        return key != null && SELF_COMPARABLE.get(key.getClass());
+    }
+
+    /**
+     * Returns true if `key` is in the tree.  The tree finds keys by
+     * compareTo, so this also checks that the key it finds is equal.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean treeHas(Object key) {
+        if (!inTree(key)) {
+            return false;
+        }
+        K found = tree.ceilingKey((K) key);
+        return found != null && ORDER.compare(found, key) == 0 && found.equals(key);
+    }
+
+    /**
+     * Returns the list of other keys with the same hash code as `key`.
+     */
+    private MyLinearMap<K, V> group(Object key, boolean create) {
+        int h = Objects.hashCode(key);
+        MyLinearMap<K, V> group = others.get(h);
+        if (group == null && create) {
+            group = new MyLinearMap<>();
+            others.put(h, group);
+        }
+        return group;
+    }
+
+    private void treeify() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(super.getEntries());
+        super.clear();
+        tree = new TreeMap<>(ORDER);
+        others = new TreeMap<>();
+        size = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void untreeify() {
+        Collection<? extends Map.Entry<K, V>> entries = getEntries();
+        tree = null;
+        others = null;
+        size = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            super.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        tree = null;
+        others = null;
+        size = 0;
+    }
+
+    @Override
+    public boolean containsKey(Object target) {
+        if (tree == null) {
+            return super.containsKey(target);
+        }
+        if (treeHas(target)) {
+            return true;
+        }
+        MyLinearMap<K, V> group = group(target, false);
+        return group != null && group.containsKey(target);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (tree == null) {
+            return super.get(key);
+        }
+        if (treeHas(key)) {
+            return tree.get(key);
+        }
+        MyLinearMap<K, V> group = group(key, false);
+        return group == null ? null : group.get(key);
+    }
+
+    /**
+     * Returns `value`, the same as MyLinearMap.put.
+     */
+    @Override
+    public V put(K key, V value) {
+        if (tree == null) {
+            super.put(key, value);
+            if (super.size() > TREEIFY_THRESHOLD) {
+                treeify();
+            }
+            return value;
+        }
+        if (treeHas(key)) {
+            tree.put(key, value);
+            return value;
+        }
+        MyLinearMap<K, V> group = group(key, false);
+        // a new key goes in the tree, unless compareTo says it is the same
+        // as a key that is already there
+        if ((group == null || !group.containsKey(key)) && inTree(key) && !tree.containsKey(key)) {
+            tree.put(key, value);
+            size++;
+            return value;
+        }
+        group = group(key, true);
+        int before = group.size();
+        group.put(key, value);
+        size += group.size() - before;
+        return value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (tree == null) {
+            return super.remove(key);
+        }
+        V old;
+        if (treeHas(key)) {
+            old = tree.remove(key);
+        } else {
+            MyLinearMap<K, V> group = group(key, false);
+            if (group == null || !group.containsKey(key)) {
+                return null;
+            }
+            old = group.remove(key);
+            if (group.isEmpty()) {
+                others.remove(Objects.hashCode(key));
+            }
+        }
+        size--;
+        if (size <= UNTREEIFY_THRESHOLD) {
+            untreeify();
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return tree == null ? super.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        if (tree == null) {
+            return super.containsValue(target);
+        }
+        for (Map.Entry<K, V> entry : getEntries()) {
+            if (Objects.equals(target, entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * While the bucket is a tree, iterates the Comparable keys and then the
+     * others.  Removing through the iterator leaves the bucket a tree, even
+     * if it gets small, because converting it would upset the iteration;
+     * the next call to `remove` converts it.
+     */
+    @Override
+    protected Iterator<Map.Entry<K, V>> entryIterator() {
+        if (tree == null) {
+            return super.entryIterator();
+        }
+        return new Iterator<Map.Entry<K, V>>() {
+            private final Iterator<Map.Entry<K, V>> treeIterator = tree.entrySet().iterator();
+            private final Iterator<MyLinearMap<K, V>> groups = others.values().iterator();
+            private Iterator<Map.Entry<K, V>> current = treeIterator;
+            private Iterator<Map.Entry<K, V>> last;        // returned the last entry
+            private MyLinearMap<K, V> group;                // the group `current` is in
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && groups.hasNext()) {
+                    group = groups.next();
+                    current = group.entryIterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = current;
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                last.remove();
+                size--;
+                if (last != treeIterator && last == current && group.isEmpty()) {
+                    groups.remove();
+                }
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * While the bucket is a tree, returns a copy of its entries.
+     */
+    @Override
+    protected Collection<? extends Map.Entry<K, V>> getEntries() {
+        if (tree == null) {
+            return super.getEntries();
+        }
+        List<Map.Entry<K, V>> entries = new ArrayList<>(size);
+        entries.addAll(tree.entrySet());
+        for (MyLinearMap<K, V> group : others.values()) {
+            entries.addAll(group.getEntries());
+        }
+        return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Spliterator<Map.Entry<K, V>> entrySpliterator() {
+        if (tree == null) {
+            return super.entrySpliterator();
+        }
+        return (Spliterator<Map.Entry<K, V>>) (Spliterator<?>) getEntries().spliterator();
+    }
+
+    @Override
+    public String toString() {
+        return tree == null ? super.toString() : "HashBucket(tree=" + size + ")";
+    }
+}
@@ -0,0 +1,139 @@
+package com.allendowney.thinkdast;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of how well a MyBetterMap or MyHashMap distributes its keys.
+ * <p>
+ * The chain lengths are the sizes of the sub-maps, so a lookup scans about
+ * `meanChainLength` entries on average and `maxChainLength` at worst.  The
+ * rehash numbers and load factor history are only collected while
+ * statistics are enabled; otherwise they are 0 and empty.
+ *
+ * @see MyBetterMap#stats()
+ */
+public final class HashMapStats {
+    private final int size;
+    private final int numMaps;
+    private final int[] chainLengthHistogram;
+    private final boolean rehashing;
+    private final boolean statsEnabled;
+    private final long rehashCount;
+    private final long totalRehashNanos;
+    private final long maxRehashNanos;
+    private final double[] loadFactorHistory;
+
+    HashMapStats(int numMaps, int[] chainLengthHistogram, boolean rehashing,
+                 MapStatsRecorder recorder) {
+        int total = 0;
+        for (int length = 0; length < chainLengthHistogram.length; length++) {
+            total += length * chainLengthHistogram[length];
+        }
+        this.size = total;
+        this.numMaps = numMaps;
+        this.chainLengthHistogram = chainLengthHistogram;
+        this.rehashing = rehashing;
+        this.statsEnabled = recorder != null;
+        this.rehashCount = recorder == null ? 0 : recorder.rehashCount();
+        this.totalRehashNanos = recorder == null ? 0 : recorder.totalRehashNanos();
+        this.maxRehashNanos = recorder == null ? 0 : recorder.maxRehashNanos();
+        this.loadFactorHistory = recorder == null ? new double[0] : recorder.loadHistory();
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of sub-maps the keys are spread over.
+     */
+    public int getNumMaps() {
+        return numMaps;
+    }
+
+    /**
+     * Returns the average number of entries per sub-map.
+     */
+    public double getLoadFactor() {
+        return numMaps == 0 ? 0 : (double) size / numMaps;
+    }
+
+    /**
+     * Returns an array where element k is the number of sub-maps with
+     * exactly k entries.  While a rehash is in progress, the old sub-maps
+     * that have not moved yet are included.
+     */
+    public int[] getChainLengthHistogram() {
+        return chainLengthHistogram.clone();
+    }
+
+    public int getMaxChainLength() {
+        return chainLengthHistogram.length - 1;
+    }
+
+    /**
+     * Returns the average number of entries in the sub-maps that are not
+     * empty, which is about how many entries a successful lookup scans.
+     */
+    public double getMeanChainLength() {
+        int nonEmpty = 0;
+        for (int length = 1; length < chainLengthHistogram.length; length++) {
+            nonEmpty += chainLengthHistogram[length];
+        }
+        return nonEmpty == 0 ? 0 : (double) size / nonEmpty;
+    }
+
+    public boolean isRehashing() {
+        return rehashing;
+    }
+
+    public boolean isStatsEnabled() {
+        return statsEnabled;
+    }
+
+    public long getRehashCount() {
+        return rehashCount;
+    }
+
+    /**
+     * Returns the time spent rehashing, summed over all rehashes.  An
+     * incremental rehash counts the time of each step, not the time from
+     * start to finish.
+     */
+    public long getTotalRehashNanos() {
+        return totalRehashNanos;
+    }
+
+    /**
+     * Returns the time spent on the longest rehash.
+     */
+    public long getMaxRehashNanos() {
+        return maxRehashNanos;
+    }
+
+    /**
+     * Returns the load factor sampled every MapStatsRecorder.SAMPLE_INTERVAL
+     * writes, oldest first, for the most recent samples.
+     */
+    public double[] getLoadFactorHistory() {
+        return loadFactorHistory.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "HashMapStats(size=" + size
+                + ", numMaps=" + numMaps
+                + ", loadFactor=" + getLoadFactor()
+                + ", maxChainLength=" + getMaxChainLength()
+                + ", meanChainLength=" + getMeanChainLength()
+                + ", histogram=" + Arrays.toString(chainLengthHistogram)
+                + ", rehashing=" + rehashing
+                + ", rehashCount=" + rehashCount
+                + ", totalRehashNanos=" + totalRehashNanos
+                + ", maxRehashNanos=" + maxRehashNanos
+                + ")";
+    }
+}
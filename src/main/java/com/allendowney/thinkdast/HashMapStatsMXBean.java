@@ -0,0 +1,34 @@
+package com.allendowney.thinkdast;
+
+/**
+ * Management interface for the statistics of a MyBetterMap or MyHashMap.
+ * Each attribute is read from a new {@link HashMapStats} snapshot.
+ *
+ * @see MyBetterMap#registerStatsMBean(String)
+ */
+public interface HashMapStatsMXBean {
+
+    int getSize();
+
+    int getNumMaps();
+
+    double getLoadFactor();
+
+    int[] getChainLengthHistogram();
+
+    int getMaxChainLength();
+
+    double getMeanChainLength();
+
+    boolean isRehashing();
+
+    boolean isStatsEnabled();
+
+    long getRehashCount();
+
+    long getTotalRehashNanos();
+
+    long getMaxRehashNanos();
+
+    double[] getLoadFactorHistory();
+}
@@ -0,0 +1,175 @@
+package com.allendowney.thinkdast;
+
+import org.jsoup.select.Elements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares how evenly Hashers spread sets of keys over a power of two
+ * sub-maps, the way MyBetterMap chooses them.
+ * <p>
+ * For each key set and Hasher, it reports the number of distinct hash
+ * codes, the longest chain, and the probe ratio: the average number of
+ * keys a successful lookup compares against, divided by what a perfectly
+ * random hash would give.  A ratio near 1 is as good as it gets; a large
+ * ratio means chains are much longer than they need to be.
+ */
+public class HashQualityReport {
+
+    /**
+     * How one Hasher spread one set of keys.
+     */
+    public static final class Result {
+        private final int keys;
+        private final int distinctHashes;
+        private final int maxChain;
+        private final double probeRatio;
+
+        Result(int keys, int distinctHashes, int maxChain, double probeRatio) {
+            this.keys = keys;
+            this.distinctHashes = distinctHashes;
+            this.maxChain = maxChain;
+            this.probeRatio = probeRatio;
+        }
+
+        public int getKeys() {
+            return keys;
+        }
+
+        public int getDistinctHashes() {
+            return distinctHashes;
+        }
+
+        public int getMaxChain() {
+            return maxChain;
+        }
+
+        public double getProbeRatio() {
+            return probeRatio;
+        }
+    }
+
+    /**
+     * Puts `keys` into `numMaps` chains with `hasher` and measures them.
+     *
+     * @param keys     distinct keys
+     * @param hasher
+     * @param numMaps  a power of two
+     * @return
+     */
+    public static Result measure(List<?> keys, Hasher hasher, int numMaps) {
+        int[] chains = new int[numMaps];
+        Set<Integer> hashes = new TreeSet<>();
+        for (Object key : keys) {
+            int h = hasher.hash(key);
+            hashes.add(h);
+            chains[h & (numMaps - 1)]++;
+        }
+        int n = keys.size();
+        int max = 0;
+        long sumOfSquares = 0;
+        for (int length : chains) {
+            max = Math.max(max, length);
+            sumOfSquares += (long) length * length;
+        }
+        // a successful search compares against (length + 1) / 2 keys on
+        // average; with a random hash the expected sum of squares is
+        // n + n (n - 1) / numMaps
+        double actual = (double) sumOfSquares / n;
+        double random = 1 + (n - 1.0) / numMaps;
+        return new Result(n, hashes.size(), max, n == 0 ? 1 : actual / random);
+    }
+
+    /**
+     * Returns the smallest power of two that is at least `n`.
+     */
+    static int tableSizeFor(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Returns a table of results, one row per key set and Hasher.  Each key
+     * set gets as many sub-maps as keys, rounded up to a power of two.
+     *
+     * @param keySets
+     * @param hashers
+     * @return
+     */
+    public static String report(Map<String, List<?>> keySets, Map<String, Hasher> hashers) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %-10s %7s %9s %9s %9s%n",
+                "keys", "hasher", "n", "distinct", "maxChain", "probes"));
+        for (Map.Entry<String, List<?>> keySet : keySets.entrySet()) {
+            List<?> keys = keySet.getValue();
+            int numMaps = tableSizeFor(keys.size());
+            for (Map.Entry<String, Hasher> hasher : hashers.entrySet()) {
+                Result result = measure(keys, hasher.getValue(), numMaps);
+                sb.append(String.format("%-22s %-10s %7d %9d %9d %9.2f%n",
+                        keySet.getKey(), hasher.getKey(), result.getKeys(),
+                        result.getDistinctHashes(), result.getMaxChain(), result.getProbeRatio()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the distinct terms of the stored Wikipedia pages, which are
+     * on the test classpath.
+     */
+    private static List<String> terms() throws IOException {
+        String[] pages = {"Java_(programming_language)", "Programming_language",
+                "Computer_science", "Mathematics", "Philosophy"};
+        WikiFetcher wf = new WikiFetcher();
+        Set<String> terms = new TreeSet<>();
+        for (String page : pages) {
+            String url = "https://en.wikipedia.org/wiki/" + page;
+            Elements paragraphs = wf.readWikipedia(url);
+            TermCounter counter = new TermCounter(url);
+            counter.processElements(paragraphs);
+            terms.addAll(counter.keySet());
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Prints the report for Wikipedia terms as String keys and as keys
+     * hashed like SillyString, and for Integers that are multiples of 1024.
+     * It uses ComparableSillyString, because SillyString prints every time
+     * it is hashed.
+     * <p>
+     * Run it with the test classes on the classpath, where the pages are.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> terms = terms();
+        List<ComparableSillyString> sillyStrings = new ArrayList<>();
+        for (String term : terms) {
+            sillyStrings.add(new ComparableSillyString(term));
+        }
+        List<Integer> multiples = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            multiples.add(i * 1024);
+        }
+
+        Map<String, List<?>> keySets = new LinkedHashMap<>();
+        keySets.put("terms (String)", terms);
+        keySets.put("terms (sum of chars)", sillyStrings);
+        keySets.put("multiples of 1024", multiples);
+
+        Map<String, Hasher> hashers = new LinkedHashMap<>();
+        hashers.put("identity", Hasher.IDENTITY);
+        hashers.put("mixed", Hasher.MIXED);
+        hashers.put("seeded", Hasher.seeded(42));
+        hashers.put("strings", Hasher.strings(42));
+
+        System.out.print(report(keySets, hashers));
+    }
+}
@@ -0,0 +1,83 @@
+package com.allendowney.thinkdast;
+
+import java.util.Objects;
+
+/**
+ * Computes the hash that MyBetterMap and MyHashMap use to choose a sub-map.
+ * <p>
+ * The maps have a power of two sub-maps and use the low bits of the hash,
+ * so a good Hasher makes every bit depend on every bit of the key.  A
+ * Hasher must return the same hash for keys that are equal, and must
+ * handle null.
+ */
+public interface Hasher {
+
+    /**
+     * Uses `hashCode` unchanged.  Fine for keys with well-mixed hash codes,
+     * and bad for keys like Integers that are multiples of a power of two.
+     */
+    Hasher IDENTITY = key -> Objects.hashCode(key);
+
+    /**
+     * Mixes the bits of `hashCode`.  This is the default.
+     */
+    Hasher MIXED = key -> mix(Objects.hashCode(key));
+
+    int hash(Object key);
+
+    /**
+     * The finalizer of MurmurHash3: a bijection on int that spreads each
+     * bit of `h` over all of the bits of the result.  Keys with different
+     * hash codes stay different, but equal hash codes stay equal, so no
+     * mixing can fix a hashCode like SillyString's that collides outright.
+     *
+     * @param h
+     * @return
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Returns a Hasher that mixes `hashCode` with a seed, so different maps
+     * (or runs) put the same keys in different places.
+     *
+     * @param seed
+     * @return
+     */
+    static Hasher seeded(final int seed) {
+        return key -> mix(Objects.hashCode(key) ^ mix(seed));
+    }
+
+    /**
+     * Returns a Hasher that hashes the characters of CharSequence keys
+     * itself, with a seed, instead of using String.hashCode.  Other keys
+     * are hashed like `seeded(seed)`.
+     *
+     * @param seed
+     * @return
+     */
+    static Hasher strings(final int seed) {
+        final Hasher others = seeded(seed);
+        return key -> {
+            if (!(key instanceof CharSequence)) {
+                return others.hash(key);
+            }
+            CharSequence chars = (CharSequence) key;
+            int h = seed ^ chars.length();
+            for (int i = 0; i < chars.length(); i++) {
+                // one round of MurmurHash3's block mixing per character
+                int k = chars.charAt(i) * 0xcc9e2d51;
+                k = Integer.rotateLeft(k, 15) * 0x1b873593;
+                h ^= k;
+                h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+            }
+            return mix(h);
+        };
+    }
+}
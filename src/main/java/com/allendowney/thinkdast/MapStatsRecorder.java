@@ -0,0 +1,71 @@
+package com.allendowney.thinkdast;
+
+/**
+ * Collects the statistics for a MyBetterMap that can't be computed later
+ * from the maps themselves: rehash counts and times, and samples of the
+ * load factor.  A map only has one while statistics are enabled.
+ */
+class MapStatsRecorder {
+    // take a load factor sample every this many writes
+    static final int SAMPLE_INTERVAL = 1024;
+
+    // number of load factor samples to keep
+    static final int HISTORY = 64;
+
+    private int writes;
+    private final double[] loadSamples = new double[HISTORY];
+    private int numSamples;
+
+    private long rehashCount;
+    private long totalRehashNanos;
+    private long maxRehashNanos;
+    private long currentRehashNanos;
+
+    /**
+     * Counts a write, and returns true if it is time for a sample.
+     */
+    boolean tick() {
+        return ++writes % SAMPLE_INTERVAL == 0;
+    }
+
+    void sampleLoad(double loadFactor) {
+        loadSamples[numSamples % HISTORY] = loadFactor;
+        numSamples++;
+    }
+
+    /**
+     * Returns the samples we have kept, oldest first.
+     */
+    double[] loadHistory() {
+        int n = Math.min(numSamples, HISTORY);
+        double[] history = new double[n];
+        for (int i = 0; i < n; i++) {
+            history[i] = loadSamples[(numSamples - n + i) % HISTORY];
+        }
+        return history;
+    }
+
+    void rehashStarted(long nanos) {
+        rehashCount++;
+        currentRehashNanos = 0;
+        rehashWork(nanos);
+    }
+
+    void rehashWork(long nanos) {
+        currentRehashNanos += nanos;
+        totalRehashNanos += nanos;
+        maxRehashNanos = Math.max(maxRehashNanos, currentRehashNanos);
+    }
+
+    long rehashCount() {
+        return rehashCount;
+    }
+
+    long totalRehashNanos() {
+        return totalRehashNanos;
+    }
+
+    long maxRehashNanos() {
+        return maxRehashNanos;
+    }
+}
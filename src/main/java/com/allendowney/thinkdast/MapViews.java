@@ -0,0 +1,164 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The entrySet, keySet and values views of a map, built on an iterator
+ * over its entries.
+ * <p>
+ * The views read through to the map, so they don't copy anything, and
+ * iterating them allocates only the iterator.  Removing through a view or
+ * its iterator removes from the map.  Adding is not supported.
+ */
+final class MapViews {
+
+    private MapViews() {
+    }
+
+    /**
+     * @param map
+     * @param entries makes an iterator over the map's entries, whose remove
+     *                method removes the last entry from the map
+     * @return
+     */
+    static <K, V> Set<Map.Entry<K, V>> entrySet(final Map<K, V> map,
+                                                final Supplier<Iterator<Map.Entry<K, V>>> entries) {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return entries.get();
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object obj) {
+                if (!(obj instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+                Object key = entry.getKey();
+                return map.containsKey(key) && Objects.equals(map.get(key), entry.getValue());
+            }
+
+            @Override
+            public boolean remove(Object obj) {
+                if (!(obj instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+                return map.remove(entry.getKey(), entry.getValue());
+            }
+
+            @Override
+            public void clear() {
+                map.clear();
+            }
+        };
+    }
+
+    static <K, V> Set<K> keySet(final Map<K, V> map,
+                                final Supplier<Iterator<Map.Entry<K, V>>> entries) {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                final Iterator<Map.Entry<K, V>> it = entries.get();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return it.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object obj) {
+                return map.containsKey(obj);
+            }
+
+            @Override
+            public boolean remove(Object obj) {
+                if (!map.containsKey(obj)) {
+                    return false;
+                }
+                map.remove(obj);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                map.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the values, which has one element per entry, so a
+     * value that appears more than once is counted more than once.
+     */
+    static <K, V> Collection<V> values(final Map<K, V> map,
+                                       final Supplier<Iterator<Map.Entry<K, V>>> entries) {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Map.Entry<K, V>> it = entries.get();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return it.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object obj) {
+                return map.containsValue(obj);
+            }
+
+            @Override
+            public void clear() {
+                map.clear();
+            }
+        };
+    }
+}
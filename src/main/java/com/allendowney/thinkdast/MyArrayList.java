@@ -1,18 +1,26 @@
 package com.allendowney.thinkdast;
 
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * @param <T>
  * @author downey
  */
-public class MyArrayList<T> implements List<T> {
+public class MyArrayList<T> implements List<T>, RandomAccess {
     int size;                    // keeps track of the number of elements
     private T[] array;           // stores the elements
+    private int modCount;        // counts structural changes, for fail-fast iterators
 
     /**
      *
@@ -26,6 +34,20 @@ public class MyArrayList<T> implements List<T> {
         size = 0;
     }
 
+    /**
+     * Makes a copy of `other` with room for at least `capacity` elements,
+     * using a single array copy.
+     *
+     * @param other
+     * @param capacity
+     */
+    @SuppressWarnings("unchecked")
+    MyArrayList(MyArrayList<? extends T> other, int capacity) {
+        array = (T[]) new Object[Math.max(capacity, other.size)];
+        System.arraycopy(other.array, 0, array, 0, other.size);
+        size = other.size;
+    }
+
     /**
      * @param args
      */
@@ -41,17 +63,14 @@ public class MyArrayList<T> implements List<T> {
         System.out.println(Arrays.toString(mal.toArray()) + " size = " + mal.size);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean add(T element) {
         if (size >= array.length) {
-            // make a bigger array and copy over the elements
-            T[] bigger = (T[]) new Object[array.length * 2];
-            System.arraycopy(array, 0, bigger, 0, array.length);
-            array = bigger;
+            ensureCapacity(size + 1);
         }
         array[size] = element;
         size++;
+        modCount++;
         return true;
     }
 
@@ -60,29 +79,57 @@ public class MyArrayList<T> implements List<T> {
         if (index < 0 || index > size) {
             throw new IndexOutOfBoundsException();
         }
-        // add the element to get the resizing
-        add(element);
+        ensureCapacity(size + 1);
 
-        // shift the elements
-        for (int i = size - 1; i > index; i--) {
-            array[i] = array[i - 1];
-        }
+        // shift the elements with a single copy
+        System.arraycopy(array, index, array, index + 1, size - index);
         // put the new one in the right place
         array[index] = element;
+        size++;
+        modCount++;
     }
 
     @Override
     public boolean addAll(Collection<? extends T> collection) {
-        boolean flag = true;
-        for (T element : collection) {
-            flag &= add(element);
-        }
-        return flag;
+        return addAll(size, collection);
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends T> collection) {
-        throw new UnsupportedOperationException();
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        // take a snapshot first, in case the collection is this list
+        Object[] elements = collection.toArray();
+        int n = elements.length;
+        if (n == 0) {
+            return false;
+        }
+        ensureCapacity(size + n);
+
+        // open a gap of n slots, then copy the new elements into it
+        System.arraycopy(array, index, array, index + n, size - index);
+        System.arraycopy(elements, 0, array, index, n);
+        size += n;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Makes sure the array can hold at least `minCapacity` elements
+     * without growing again.
+     * <p>
+     * The array at least doubles, so a sequence of adds is still amortized
+     * constant time.
+     *
+     * @param minCapacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > array.length) {
+            // make a bigger array and copy over the elements
+            int capacity = Math.max(array.length * 2, minCapacity);
+            array = Arrays.copyOf(array, capacity);
+        }
     }
 
     @Override
@@ -90,6 +137,7 @@ public class MyArrayList<T> implements List<T> {
         // note: this version does not actually null out the references
         // in the array, so it might delay garbage collection.
         size = 0;
+        modCount++;
     }
 
     @Override
@@ -148,10 +196,7 @@ public class MyArrayList<T> implements List<T> {
 
     @Override
     public Iterator<T> iterator() {
-        // make a copy of the array
-        T[] copy = Arrays.copyOf(array, size);
-        // make a list and return an iterator
-        return Arrays.asList(copy).iterator();
+        return new Itr(0);
     }
 
     @Override
@@ -167,18 +212,109 @@ public class MyArrayList<T> implements List<T> {
 
     @Override
     public ListIterator<T> listIterator() {
-        // make a copy of the array
-        T[] copy = Arrays.copyOf(array, size);
-        // make a list and return an iterator
-        return Arrays.asList(copy).listIterator();
+        return new Itr(0);
     }
 
     @Override
     public ListIterator<T> listIterator(int index) {
-        // make a copy of the array
-        T[] copy = Arrays.copyOf(array, size);
-        // make a list and return an iterator
-        return Arrays.asList(copy).listIterator(index);
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new Itr(index);
+    }
+
+    /**
+     * A ListIterator that reads the live array rather than a copy.
+     * <p>
+     * If the list is structurally modified other than through this iterator,
+     * the next call throws ConcurrentModificationException.
+     */
+    private class Itr implements ListIterator<T> {
+        private int cursor;                     // index of the next element
+        private int lastRet = -1;               // index of the last element returned, or -1
+        private int expectedModCount = modCount;
+
+        Itr(int index) {
+            cursor = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public T next() {
+            checkForComodification();
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            lastRet = cursor;
+            cursor++;
+            return array[lastRet];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @Override
+        public T previous() {
+            checkForComodification();
+            if (cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+            cursor--;
+            lastRet = cursor;
+            return array[lastRet];
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            MyArrayList.this.remove(lastRet);
+            cursor = lastRet;
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(T element) {
+            if (lastRet < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            MyArrayList.this.set(lastRet, element);
+        }
+
+        @Override
+        public void add(T element) {
+            checkForComodification();
+            MyArrayList.this.add(cursor, element);
+            cursor++;
+            lastRet = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 
     @Override
@@ -193,27 +329,106 @@ public class MyArrayList<T> implements List<T> {
 
     @Override
     public T remove(int index) {
-        T t = array[index];
-        for (int i = index; i < size - 1; i++) {
-            array[i] = array[i + 1];
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
         }
+        T t = array[index];
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
         size--;
         array[size] = null;
+        modCount++;
         return t;
     }
 
+    /**
+     * Removes the elements from `fromIndex`, inclusive, to `toIndex`, exclusive,
+     * with a single copy.
+     *
+     * @param fromIndex
+     * @param toIndex
+     */
+    public void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        System.arraycopy(array, toIndex, array, fromIndex, size - toIndex);
+        truncate(size - (toIndex - fromIndex));
+    }
+
     @Override
     public boolean removeAll(Collection<?> collection) {
-        boolean flag = true;
-        for (Object obj : collection) {
-            flag &= remove(obj);
-        }
-        return flag;
+        return batchRemove(collection, false);
     }
 
     @Override
     public boolean retainAll(Collection<?> collection) {
-        throw new UnsupportedOperationException();
+        return batchRemove(collection, true);
+    }
+
+    /**
+     * Keeps the elements for which `collection.contains` equals `keep`,
+     * compacting the survivors to the front in one pass.
+     * <p>
+     * Each call to `contains` costs whatever it costs for the given collection,
+     * so pass a Set if the collection is large.
+     *
+     * @param collection
+     * @param keep
+     * @return true if any element was removed
+     */
+    private boolean batchRemove(final Collection<?> collection, final boolean keep) {
+        return removeIf(new Predicate<Object>() {
+            @Override
+            public boolean test(Object element) {
+                return collection.contains(element) != keep;
+            }
+        });
+    }
+
+    /**
+     * Removes the elements that pass the filter, compacting the survivors
+     * to the front in one pass.
+     * <p>
+     * If the filter throws, the elements it had not tested yet are moved
+     * down after the survivors, so the list is left with no duplicates and
+     * no lost elements.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        int oldSize = size;
+        int i = 0;
+        int j = 0;
+        try {
+            for (; i < size; i++) {
+                if (!filter.test(array[i])) {
+                    array[j++] = array[i];
+                }
+            }
+        } finally {
+            if (i < size) {
+                System.arraycopy(array, i, array, j, size - i);
+                j += size - i;
+            }
+            truncate(j);
+        }
+        return size != oldSize;
+    }
+
+    /**
+     * Drops the elements at `newSize` and beyond, nulling them out so they
+     * can be garbage collected.
+     *
+     * @param newSize
+     * @return true if the size changed
+     */
+    private boolean truncate(int newSize) {
+        if (newSize == size) {
+            return false;
+        }
+        Arrays.fill(array, newSize, size, null);
+        size = newSize;
+        modCount++;
+        return true;
     }
 
     @Override
@@ -233,11 +448,175 @@ public class MyArrayList<T> implements List<T> {
 
     @Override
     public List<T> subList(int fromIndex, int toIndex) {
-        if (fromIndex < 0 || toIndex >= size || fromIndex > toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
             throw new IndexOutOfBoundsException();
         }
-        T[] copy = Arrays.copyOfRange(array, fromIndex, toIndex);
-        return Arrays.asList(copy);
+        return new SubList(fromIndex, toIndex);
+    }
+
+    /**
+     * A view of a range of this list, backed by the same array.
+     * <p>
+     * Changes through the view write through to this list.  If this list is
+     * structurally modified other than through the view, the view throws
+     * ConcurrentModificationException.
+     */
+    private class SubList extends AbstractList<T> implements RandomAccess {
+        private final int offset;               // index in the array of the first element
+        private int size;
+        private int expectedModCount = MyArrayList.this.modCount;
+
+        SubList(int fromIndex, int toIndex) {
+            offset = fromIndex;
+            size = toIndex - fromIndex;
+        }
+
+        @Override
+        public T get(int index) {
+            checkIndex(index, size - 1);
+            return array[offset + index];
+        }
+
+        @Override
+        public T set(int index, T element) {
+            checkIndex(index, size - 1);
+            T old = array[offset + index];
+            array[offset + index] = element;
+            return old;
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        @Override
+        public void add(int index, T element) {
+            checkIndex(index, size);
+            MyArrayList.this.add(offset + index, element);
+            updateSize(1);
+        }
+
+        @Override
+        public T remove(int index) {
+            checkIndex(index, size - 1);
+            T old = MyArrayList.this.remove(offset + index);
+            updateSize(-1);
+            return old;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            checkForComodification();
+            MyArrayList.this.removeRange(offset + fromIndex, offset + toIndex);
+            updateSize(fromIndex - toIndex);
+        }
+
+        private void checkIndex(int index, int max) {
+            checkForComodification();
+            if (index < 0 || index > max) {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+
+        private void checkForComodification() {
+            if (MyArrayList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void updateSize(int delta) {
+            size += delta;
+            expectedModCount = MyArrayList.this.modCount;
+            modCount++;
+        }
+    }
+
+    /**
+     * Returns a Spliterator that splits by halving the index range, so a
+     * parallel stream gets balanced pieces without copying.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ArraySpliterator(0, -1, 0);
+    }
+
+    /**
+     * Spliterator over a range of the array.
+     * <p>
+     * The end of the range is bound when traversal or splitting starts, so
+     * elements added before then are included.  Like the iterators, it
+     * checks modCount and throws ConcurrentModificationException.
+     */
+    private class ArraySpliterator implements Spliterator<T> {
+        private int index;             // next index to visit
+        private int fence;             // one past the last index, or -1 until bound
+        private int expectedModCount;
+
+        public ArraySpliterator(int origin, int fence, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                expectedModCount = modCount;
+                fence = size;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int hi = getFence();
+            int mid = (index + hi) >>> 1;
+            if (index >= mid) {
+                return null;
+            }
+            Spliterator<T> prefix = new ArraySpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            int hi = getFence();
+            if (index >= hi) {
+                return false;
+            }
+            T element = array[index++];
+            action.accept(element);
+            checkForComodification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            int hi = getFence();
+            T[] a = array;
+            for (; index < hi; index++) {
+                action.accept(a[index]);
+            }
+            checkForComodification();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 
     @Override
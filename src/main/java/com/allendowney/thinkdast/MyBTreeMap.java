@@ -0,0 +1,833 @@
+package com.allendowney.thinkdast;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of a sorted Map using a B+ tree.
+ * <p>
+ * Each node holds up to `maxKeys` keys in an array, which it searches with
+ * binary search, so a lookup touches a few wide nodes instead of one small
+ * node per level the way MyTreeMap does.  With the default of 64 keys per
+ * node, a million keys fit in a tree of height 4.
+ * <p>
+ * The values are all in the leaves, in an array parallel to the keys, and
+ * each leaf points to the next, so iterating, or scanning a range with
+ * `range`, walks along the leaves without going back up the tree.  The
+ * inner nodes hold copies of keys that separate their children: everything
+ * in `children[i]` is less than `keys[i]`, and everything in
+ * `children[i + 1]` is greater or equal.
+ * <p>
+ * Every node but the root holds at least `maxKeys / 2` keys.  A node that
+ * overflows splits in two; a node that underflows borrows a key from a
+ * sibling, or merges with it if the sibling has none to spare.
+ * <p>
+ * Keys must be Comparable and can't be null.  `fromSorted` builds a tree
+ * from sorted entries in linear time, with every leaf full.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MyBTreeMap<K, V> implements Map<K, V> {
+
+    public static final int DEFAULT_MAX_KEYS = 64;
+
+    private final int maxKeys;
+    private final int minKeys;
+    private Node root;
+    private int size = 0;
+    private int modCount = 0;    // counts structural changes, for the iterators
+
+    // the inner nodes from the root to a leaf, and which child was taken
+    // from each, reused by put and remove
+    private Inner[] pathNodes = new Inner[8];
+    private int[] pathIndexes = new int[8];
+
+    /**
+     * A node has room for one key more than `maxKeys`, so it can overflow
+     * before it splits.
+     */
+    private abstract static class Node {
+        final Object[] keys;
+        int n;    // number of keys
+
+        Node(int capacity) {
+            keys = new Object[capacity];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf next;
+
+        Leaf(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children;    // n + 1 of them
+
+        Inner(int capacity) {
+            super(capacity);
+            children = new Node[capacity + 1];
+        }
+    }
+
+    /**
+     *
+     */
+    public MyBTreeMap() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    /**
+     * @param maxKeys the most keys a node can hold, at least 4
+     */
+    public MyBTreeMap(int maxKeys) {
+        if (maxKeys < 4) {
+            throw new IllegalArgumentException("Illegal maxKeys: " + maxKeys);
+        }
+        this.maxKeys = maxKeys;
+        this.minKeys = maxKeys / 2;
+        this.root = newLeaf();
+    }
+
+    private Leaf newLeaf() {
+        return new Leaf(maxKeys + 1);
+    }
+
+    private Inner newInner() {
+        return new Inner(maxKeys + 1);
+    }
+
+    /**
+     * Builds a map from entries in strictly increasing order of key, one
+     * leaf at a time and then one level at a time, without searching or
+     * splitting.  The leaves are full, apart from the last two, which share
+     * what is left.
+     *
+     * @param maxKeys the most keys a node can hold, at least 4
+     * @param entries
+     * @return
+     * @throws IllegalArgumentException if the keys are not in increasing order
+     */
+    public static <K, V> MyBTreeMap<K, V> fromSorted(int maxKeys,
+                                                     Iterator<? extends Entry<? extends K, ? extends V>> entries) {
+        MyBTreeMap<K, V> map = new MyBTreeMap<>(maxKeys);
+        map.buildFromSorted(entries);
+        return map;
+    }
+
+    /**
+     * Builds a map with the default node size from sorted entries.
+     *
+     * @param entries
+     * @return
+     */
+    public static <K, V> MyBTreeMap<K, V> fromSorted(Iterator<? extends Entry<? extends K, ? extends V>> entries) {
+        return fromSorted(DEFAULT_MAX_KEYS, entries);
+    }
+
+    private void buildFromSorted(Iterator<? extends Entry<? extends K, ? extends V>> entries) {
+        // the bottom level: fill each leaf before starting the next
+        Node[] level = new Node[16];
+        int count = 0;
+        Leaf leaf = (Leaf) root;
+        level[count++] = leaf;
+        Object previous = null;
+        while (entries.hasNext()) {
+            Entry<? extends K, ? extends V> entry = entries.next();
+            K key = entry.getKey();
+            checkKey(key);
+            if (size > 0 && compare(previous, key) >= 0) {
+                throw new IllegalArgumentException("Keys out of order: " + previous + ", " + key);
+            }
+            if (leaf.n == maxKeys) {
+                Leaf next = newLeaf();
+                leaf.next = next;
+                leaf = next;
+                if (count == level.length) {
+                    level = Arrays.copyOf(level, count * 2);
+                }
+                level[count++] = leaf;
+            }
+            leaf.keys[leaf.n] = key;
+            leaf.values[leaf.n] = entry.getValue();
+            leaf.n++;
+            size++;
+            previous = key;
+        }
+        if (count > 1 && leaf.n < minKeys) {
+            // the last leaf is too small, so even it out with the one before
+            Leaf before = (Leaf) level[count - 2];
+            int total = before.n + leaf.n;
+            int move = before.n - (total - total / 2);
+            System.arraycopy(leaf.keys, 0, leaf.keys, move, leaf.n);
+            System.arraycopy(leaf.values, 0, leaf.values, move, leaf.n);
+            System.arraycopy(before.keys, before.n - move, leaf.keys, 0, move);
+            System.arraycopy(before.values, before.n - move, leaf.values, 0, move);
+            Arrays.fill(before.keys, before.n - move, before.n, null);
+            Arrays.fill(before.values, before.n - move, before.n, null);
+            before.n -= move;
+            leaf.n += move;
+        }
+
+        // the lowest key under each node of the level, for the separators
+        Object[] lows = new Object[count];
+        for (int i = 0; i < count; i++) {
+            lows[i] = level[i].keys[0];
+        }
+
+        // each level up has as few nodes as will hold the level below, with
+        // the children shared out evenly, which leaves none of them too small
+        while (count > 1) {
+            int parents = (count + maxKeys) / (maxKeys + 1);
+            Node[] upper = new Node[parents];
+            Object[] upperLows = new Object[parents];
+            int child = 0;
+            for (int p = 0; p < parents; p++) {
+                int children = count / parents + (p < count % parents ? 1 : 0);
+                Inner inner = newInner();
+                upperLows[p] = lows[child];
+                for (int c = 0; c < children; c++, child++) {
+                    inner.children[c] = level[child];
+                    if (c > 0) {
+                        inner.keys[c - 1] = lows[child];
+                    }
+                }
+                inner.n = children - 1;
+                upper[p] = inner;
+            }
+            level = upper;
+            lows = upperLows;
+            count = parents;
+        }
+        root = level[0];
+        modCount++;
+    }
+
+    /**
+     * Compares two keys, which must be Comparable.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object key, Object other) {
+        return ((Comparable<Object>) key).compareTo(other);
+    }
+
+    private static void checkKey(Object key) {
+        // some implementations can handle null as a key, but not this one
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Returns the index of the key in the node, or (-(insertion point) - 1)
+     * if it is not there, like Arrays.binarySearch.
+     */
+    private static int search(Node node, Object key) {
+        return Arrays.binarySearch(node.keys, 0, node.n, key);
+    }
+
+    /**
+     * Returns the index of the child of `inner` that would contain `key`.
+     */
+    private static int childIndex(Inner inner, Object key) {
+        int index = search(inner, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Returns the leaf that contains `key`, or would.
+     */
+    private Leaf findLeaf(Object key) {
+        checkKey(key);
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Finds the leaf for `key`, remembering the inner nodes on the way in
+     * pathNodes and pathIndexes.
+     *
+     * @return the depth of the leaf
+     */
+    private int descend(Object key) {
+        checkKey(key);
+        int depth = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int index = childIndex(inner, key);
+            if (depth == pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+                pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+            }
+            pathNodes[depth] = inner;
+            pathIndexes[depth] = index;
+            depth++;
+            node = inner.children[index];
+        }
+        return depth;
+    }
+
+    private Leaf leafAt(int depth) {
+        return (Leaf) (depth == 0 ? root : pathNodes[depth - 1].children[pathIndexes[depth - 1]]);
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf leaf = findLeaf(key);
+        int index = search(leaf, key);
+        return index >= 0 ? value(leaf, index) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V value(Leaf leaf, int index) {
+        return (V) leaf.values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return search(findLeaf(key), key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.n; i++) {
+                if (Objects.equals(target, leaf.values[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param key
+     * @param value
+     * @return the old value, or null if the key was not in the map
+     */
+    @Override
+    public V put(K key, V value) {
+        int depth = descend(key);
+        Leaf leaf = leafAt(depth);
+        int index = search(leaf, key);
+        if (index >= 0) {
+            V oldValue = value(leaf, index);
+            leaf.values[index] = value;
+            Arrays.fill(pathNodes, 0, depth, null);
+            return oldValue;
+        }
+        index = -index - 1;
+        insertAt(leaf.keys, leaf.n, index, key);
+        insertAt(leaf.values, leaf.n, index, value);
+        leaf.n++;
+        size++;
+        modCount++;
+
+        // split full nodes on the way back up
+        Node node = leaf;
+        for (int level = depth - 1; level >= -1 && node.n > maxKeys; level--) {
+            Object separator;
+            Node right;
+            if (node instanceof Leaf) {
+                right = splitLeaf((Leaf) node);
+                separator = right.keys[0];
+            } else {
+                Inner inner = (Inner) node;
+                separator = inner.keys[inner.n / 2];
+                right = splitInner(inner);
+            }
+            if (level == -1) {
+                Inner newRoot = newInner();
+                newRoot.keys[0] = separator;
+                newRoot.children[0] = node;
+                newRoot.children[1] = right;
+                newRoot.n = 1;
+                root = newRoot;
+                break;
+            }
+            Inner parent = pathNodes[level];
+            int childIndex = pathIndexes[level];
+            insertAt(parent.keys, parent.n, childIndex, separator);
+            insertAt(parent.children, parent.n + 1, childIndex + 1, right);
+            parent.n++;
+            node = parent;
+        }
+        Arrays.fill(pathNodes, 0, depth, null);
+        return null;
+    }
+
+    /**
+     * Shifts array[index, n) up one place and stores `element` at `index`.
+     */
+    private static void insertAt(Object[] array, int n, int index, Object element) {
+        System.arraycopy(array, index, array, index + 1, n - index);
+        array[index] = element;
+    }
+
+    /**
+     * Shifts array[index + 1, n) down one place and clears array[n - 1].
+     */
+    private static void removeAt(Object[] array, int n, int index) {
+        System.arraycopy(array, index + 1, array, index, n - index - 1);
+        array[n - 1] = null;
+    }
+
+    /**
+     * Moves the upper half of the leaf to a new leaf, which it links after
+     * this one.
+     */
+    private Leaf splitLeaf(Leaf leaf) {
+        Leaf right = newLeaf();
+        int mid = leaf.n / 2;
+        right.n = leaf.n - mid;
+        System.arraycopy(leaf.keys, mid, right.keys, 0, right.n);
+        System.arraycopy(leaf.values, mid, right.values, 0, right.n);
+        Arrays.fill(leaf.keys, mid, leaf.n, null);
+        Arrays.fill(leaf.values, mid, leaf.n, null);
+        leaf.n = mid;
+        right.next = leaf.next;
+        leaf.next = right;
+        return right;
+    }
+
+    /**
+     * Moves the keys and children after the middle key to a new node.  The
+     * middle key goes up to the parent, so neither half keeps it.
+     */
+    private Inner splitInner(Inner inner) {
+        Inner right = newInner();
+        int mid = inner.n / 2;
+        right.n = inner.n - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.n);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.n + 1);
+        Arrays.fill(inner.keys, mid, inner.n, null);
+        Arrays.fill(inner.children, mid + 1, inner.n + 1, null);
+        inner.n = mid;
+        return right;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the key from its leaf, then fixes any node that has fewer
+     * than `minKeys` keys on the way back up.  A separator equal to the
+     * removed key can stay where it is, because it still separates the keys
+     * on either side.
+     *
+     * @param key
+     * @return the old value, or null if the key was not in the map
+     */
+    @Override
+    public V remove(Object key) {
+        int depth = descend(key);
+        Leaf leaf = leafAt(depth);
+        int index = search(leaf, key);
+        if (index < 0) {
+            Arrays.fill(pathNodes, 0, depth, null);
+            return null;
+        }
+        V oldValue = value(leaf, index);
+        removeAt(leaf.keys, leaf.n, index);
+        removeAt(leaf.values, leaf.n, index);
+        leaf.n--;
+        size--;
+        modCount++;
+
+        Node node = leaf;
+        for (int level = depth - 1; level >= 0 && node.n < minKeys; level--) {
+            Inner parent = pathNodes[level];
+            fixUnderflow(parent, pathIndexes[level]);
+            node = parent;
+        }
+        if (root instanceof Inner && root.n == 0) {
+            root = ((Inner) root).children[0];
+        }
+        Arrays.fill(pathNodes, 0, depth, null);
+        return oldValue;
+    }
+
+    /**
+     * Gives `parent.children[i]` enough keys, by borrowing one from a
+     * sibling or merging with one.
+     */
+    private void fixUnderflow(Inner parent, int i) {
+        if (i > 0 && parent.children[i - 1].n > minKeys) {
+            borrowFromLeft(parent, i);
+        } else if (i < parent.n && parent.children[i + 1].n > minKeys) {
+            borrowFromRight(parent, i);
+        } else if (i > 0) {
+            merge(parent, i - 1);
+        } else {
+            merge(parent, i);
+        }
+    }
+
+    private void borrowFromLeft(Inner parent, int i) {
+        Node child = parent.children[i];
+        Node left = parent.children[i - 1];
+        if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            Leaf from = (Leaf) left;
+            insertAt(leaf.keys, leaf.n, 0, from.keys[from.n - 1]);
+            insertAt(leaf.values, leaf.n, 0, from.values[from.n - 1]);
+            from.keys[from.n - 1] = null;
+            from.values[from.n - 1] = null;
+            parent.keys[i - 1] = leaf.keys[0];
+        } else {
+            // rotate through the parent: its separator comes down, and the
+            // last key of the sibling goes up
+            Inner inner = (Inner) child;
+            Inner from = (Inner) left;
+            insertAt(inner.keys, inner.n, 0, parent.keys[i - 1]);
+            insertAt(inner.children, inner.n + 1, 0, from.children[from.n]);
+            parent.keys[i - 1] = from.keys[from.n - 1];
+            from.keys[from.n - 1] = null;
+            from.children[from.n] = null;
+        }
+        child.n++;
+        left.n--;
+    }
+
+    private void borrowFromRight(Inner parent, int i) {
+        Node child = parent.children[i];
+        Node right = parent.children[i + 1];
+        if (child instanceof Leaf) {
+            Leaf leaf = (Leaf) child;
+            Leaf from = (Leaf) right;
+            leaf.keys[leaf.n] = from.keys[0];
+            leaf.values[leaf.n] = from.values[0];
+            removeAt(from.keys, from.n, 0);
+            removeAt(from.values, from.n, 0);
+            parent.keys[i] = from.keys[0];
+        } else {
+            Inner inner = (Inner) child;
+            Inner from = (Inner) right;
+            inner.keys[inner.n] = parent.keys[i];
+            inner.children[inner.n + 1] = from.children[0];
+            parent.keys[i] = from.keys[0];
+            removeAt(from.keys, from.n, 0);
+            removeAt(from.children, from.n + 1, 0);
+        }
+        child.n++;
+        right.n--;
+    }
+
+    /**
+     * Moves everything in `parent.children[i + 1]` into
+     * `parent.children[i]`, and removes the separator between them.
+     */
+    private void merge(Inner parent, int i) {
+        Node left = parent.children[i];
+        Node right = parent.children[i + 1];
+        if (left instanceof Leaf) {
+            Leaf leaf = (Leaf) left;
+            Leaf from = (Leaf) right;
+            System.arraycopy(from.keys, 0, leaf.keys, leaf.n, from.n);
+            System.arraycopy(from.values, 0, leaf.values, leaf.n, from.n);
+            leaf.n += from.n;
+            leaf.next = from.next;
+        } else {
+            Inner inner = (Inner) left;
+            Inner from = (Inner) right;
+            inner.keys[inner.n] = parent.keys[i];
+            System.arraycopy(from.keys, 0, inner.keys, inner.n + 1, from.n);
+            System.arraycopy(from.children, 0, inner.children, inner.n + 1, from.n + 1);
+            inner.n += from.n + 1;
+        }
+        removeAt(parent.keys, parent.n, i);
+        removeAt(parent.children, parent.n + 1, i + 1);
+        parent.n--;
+    }
+
+    @Override
+    public void clear() {
+        root = newLeaf();
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Leaf firstLeaf() {
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Returns the least key.
+     *
+     * @return
+     * @throws NoSuchElementException if the map is empty
+     */
+    @SuppressWarnings("unchecked")
+    public K firstKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return (K) firstLeaf().keys[0];
+    }
+
+    /**
+     * Returns the greatest key.
+     *
+     * @return
+     * @throws NoSuchElementException if the map is empty
+     */
+    @SuppressWarnings("unchecked")
+    public K lastKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[node.n];
+        }
+        return (K) node.keys[node.n - 1];
+    }
+
+    /**
+     * Returns the entries with keys from `fromKey`, inclusive, to `toKey`,
+     * exclusive, in order.  Iterating finds the first leaf in O(log n) time
+     * and then follows the leaves, so a scan of k entries takes
+     * O(log n + k) time.
+     *
+     * @param fromKey
+     * @param toKey
+     * @return
+     */
+    public Iterable<Entry<K, V>> range(final K fromKey, final K toKey) {
+        checkKey(fromKey);
+        checkKey(toKey);
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return () -> new LeafIterator(fromKey, toKey);
+    }
+
+    /**
+     * Returns the number of levels in the tree, for testing.
+     *
+     * @return
+     */
+    public int height() {
+        int height = 1;
+        for (Node node = root; node instanceof Inner; node = ((Inner) node).children[0]) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Returns a view of the entries in key order, which reads through to
+     * the map.
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return MapViews.entrySet(this, () -> new LeafIterator(null, null));
+    }
+
+    /**
+     * Returns a view of the keys in order, which reads through to the map.
+     */
+    @Override
+    public Set<K> keySet() {
+        return MapViews.keySet(this, () -> new LeafIterator(null, null));
+    }
+
+    /**
+     * Returns a view of the values in key order, which reads through to the
+     * map.
+     */
+    @Override
+    public Collection<V> values() {
+        return MapViews.values(this, () -> new LeafIterator(null, null));
+    }
+
+    /**
+     * An entry returned by the iterators, which reads and writes the slot
+     * of its key in a leaf.  After a put or remove changes the shape of the
+     * tree, the slot may have moved, so the entry finds its key again.  If
+     * the key has been removed, getValue returns null and setValue throws
+     * IllegalStateException, rather than putting the key back.
+     */
+    private final class LeafEntry implements Entry<K, V> {
+        private final K key;
+        private Leaf leaf;             // where the key was when modCount
+        private int index;             // was expectedModCount, or index < 0
+        private int expectedModCount;
+
+        @SuppressWarnings("unchecked")
+        LeafEntry(Leaf leaf, int index) {
+            this.key = (K) leaf.keys[index];
+            this.leaf = leaf;
+            this.index = index;
+            this.expectedModCount = modCount;
+        }
+
+        /**
+         * Returns true if the key is still in the map, and leaves `leaf`
+         * and `index` pointing at it.
+         */
+        private boolean locate() {
+            if (modCount != expectedModCount) {
+                leaf = findLeaf(key);
+                index = search(leaf, key);
+                expectedModCount = modCount;
+            }
+            return index >= 0;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return locate() ? MyBTreeMap.<V>value(leaf, index) : null;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (!locate()) {
+                throw new IllegalStateException("Key has been removed: " + key);
+            }
+            V oldValue = value(leaf, index);
+            leaf.values[index] = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+            return key.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+    /**
+     * Walks along the leaves from a key, or from the start, up to a key, or
+     * to the end.  After a remove, merges may have moved the entries, so it
+     * finds its place again by searching for the removed key.
+     */
+    private class LeafIterator implements Iterator<Entry<K, V>> {
+        private final Object toKey;    // exclusive, or null for the end
+        private Leaf leaf;
+        private int index;
+        private int expectedModCount = modCount;
+        private K lastKey;             // returned by next, or null
+
+        public LeafIterator(Object fromKey, Object toKey) {
+            this.toKey = toKey;
+            if (fromKey == null) {
+                leaf = firstLeaf();
+                index = 0;
+                skipEmpty();
+            } else {
+                seek(fromKey, true);
+            }
+        }
+
+        /**
+         * Moves to the first key at or after `key` (or strictly after it, if
+         * not `inclusive`).
+         */
+        private void seek(Object key, boolean inclusive) {
+            leaf = findLeaf(key);
+            int found = search(leaf, key);
+            index = found >= 0 ? (inclusive ? found : found + 1) : -found - 1;
+            skipEmpty();
+        }
+
+        private void skipEmpty() {
+            while (leaf != null && index >= leaf.n) {
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && (toKey == null || compare(leaf.keys[index], toKey) < 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastKey = (K) leaf.keys[index];
+            Entry<K, V> entry = new LeafEntry(leaf, index);
+            index++;
+            skipEmpty();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            MyBTreeMap.this.remove(lastKey);
+            expectedModCount = modCount;
+            seek(lastKey, false);
+            lastKey = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MyBTreeMap(size=" + size + ", height=" + height() + ")";
+    }
+}
@@ -1,16 +1,34 @@
 package com.allendowney.thinkdast;
 
-import java.util.ArrayList;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  * Implementation of a Map using a collection of MyLinearMap, and
  * using `hashCode` to determine which map each key should go in.
+ * <p>
+ * The number of sub-maps is a power of two, and the sub-map is chosen by
+ * the low bits of a Hasher, which by default mixes the bits of hashCode.
+ * <p>
+ * The sub-maps are HashBuckets, which turn into trees if a bad hash
+ * function puts too many keys in one of them, so a lookup costs
+ * O(log n) instead of O(n) when the keys collide.  Each sub-map is made
+ * the first time a key is looked up in it, so until then its slot in
+ * `maps` is null.
  *
  * @param <K>
  * @param <V>
@@ -21,43 +39,93 @@ public class MyBetterMap<K, V> implements Map<K, V> {
     // MyBetterMap uses a collection of MyLinearMap
     protected List<MyLinearMap<K, V>> maps;
 
+    // collects statistics while they are enabled, or null
+    protected MapStatsRecorder recorder;
+
+    // computes the hash that chooses the sub-map
+    protected final Hasher hasher;
+
     /**
      * Initialize the map with 2 sub-maps.
      */
     public MyBetterMap() {
-        makeMaps(2);
+        this(Hasher.MIXED);
+    }
+
+    /**
+     * Initialize the map with 2 sub-maps.
+     *
+     * @param hasher computes the hash that chooses the sub-map
+     */
+    public MyBetterMap(Hasher hasher) {
+        this(hasher, 2);
+    }
+
+    /**
+     * @param hasher  computes the hash that chooses the sub-map
+     * @param numMaps number of sub-maps, a power of two
+     */
+    protected MyBetterMap(Hasher hasher, int numMaps) {
+        this.hasher = Objects.requireNonNull(hasher);
+        makeMaps(numMaps);
     }
 
     /**
-     * Makes a collection of `k` MyLinearMap
+     * Makes room for `k` MyLinearMap, which are made later by `bucket`.
      *
-     * @param k
+     * @param k a power of two
      */
+    @SuppressWarnings({"unchecked", "rawtypes"})
     protected void makeMaps(int k) {
-        maps = new ArrayList<>(k);
-        for (int i = 0; i < k; i++) {
-            maps.add(new MyLinearMap<K, V>());
+        maps = Arrays.asList(new MyLinearMap[k]);
+    }
+
+    /**
+     * Returns the sub-map at `index`, making it if it doesn't exist yet.
+     *
+     * @param index
+     * @return
+     */
+    protected MyLinearMap<K, V> bucket(int index) {
+        MyLinearMap<K, V> map = maps.get(index);
+        if (map == null) {
+            map = new HashBucket<K, V>();
+            maps.set(index, map);
         }
+        return map;
     }
 
     @Override
     public void clear() {
         // clear the sub-maps
         for (MyLinearMap<K, V> map : maps) {
-            map.clear();
+            if (map != null) {
+                map.clear();
+            }
         }
     }
 
     /**
-     * Uses the hashCode to find the map that would/should contain the given key.
+     * Uses the hasher to find the map that would/should contain the given key.
      *
      * @param key
      * @return
      */
     protected MyLinearMap<K, V> chooseMap(Object key) {
-        // Neither "Math.abs" nor negation should be used on numbers that could be "MIN_VALUE"
-        int index = (key == null) ? 0 : Math.abs(key.hashCode()) % maps.size();
-        return maps.get(index);
+        return bucket(indexFor(key, maps.size()));
+    }
+
+    /**
+     * Returns the index of the map the key belongs in, out of `numMaps`.
+     *
+     * @param key
+     * @param numMaps
+     * @return
+     */
+    protected int indexFor(Object key, int numMaps) {
+        // numMaps is a power of two, so the mask keeps the low bits; unlike
+        // Math.abs(hash) % numMaps, it needs no division and works for MIN_VALUE
+        return hasher.hash(key) & (numMaps - 1);
     }
 
     @Override
@@ -74,9 +142,70 @@ public class MyBetterMap<K, V> implements Map<K, V> {
         return false;
     }
 
+    /**
+     * Returns a view of the entries, which reads through to the map.
+     */
     @Override
     public Set<Entry<K, V>> entrySet() {
-        throw new UnsupportedOperationException();
+        return MapViews.entrySet(this, this::entryIterator);
+    }
+
+    /**
+     * Returns an iterator over the entries of each sub-map in turn, whose
+     * remove method removes from the map.
+     *
+     * @return
+     */
+    protected Iterator<Entry<K, V>> entryIterator() {
+        return new BucketIterator();
+    }
+
+    /**
+     * Called when an iterator removes an entry.  Subclasses that keep track
+     * of the size can override it.
+     */
+    protected void removedByIterator() {
+    }
+
+    private class BucketIterator implements Iterator<Entry<K, V>> {
+        private final List<MyLinearMap<K, V>> expectedMaps = maps;
+        private int index = 0;                            // next sub-map
+        private Iterator<Entry<K, V>> current = Collections.emptyIterator();
+        private Iterator<Entry<K, V>> last;               // returned the last entry
+
+        @Override
+        public boolean hasNext() {
+            if (maps != expectedMaps) {
+                // the map was resized, so the entries have moved
+                throw new ConcurrentModificationException();
+            }
+            while (!current.hasNext() && index < expectedMaps.size()) {
+                MyLinearMap<K, V> map = expectedMaps.get(index++);
+                if (map != null) {
+                    current = map.entryIterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = current;
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            last.remove();
+            last = null;
+            removedByIterator();
+        }
     }
 
     @Override
@@ -90,19 +219,18 @@ public class MyBetterMap<K, V> implements Map<K, V> {
         return size() == 0;
     }
 
+    /**
+     * Returns a view of the keys, which reads through to the map.
+     */
     @Override
     public Set<K> keySet() {
-        // add up the keySets from the sub-maps
-        Set<K> set = new HashSet<>();
-        for (MyLinearMap<K, V> map : maps) {
-            set.addAll(map.keySet());
-        }
-        return set;
+        return MapViews.keySet(this, this::entryIterator);
     }
 
     @Override
     public V put(K key, V value) {
         MyLinearMap<K, V> map = chooseMap(key);
+        recordWrite();
         return map.put(key, value);
     }
 
@@ -116,6 +244,7 @@ public class MyBetterMap<K, V> implements Map<K, V> {
     @Override
     public V remove(Object key) {
         MyLinearMap<K, V> map = chooseMap(key);
+        recordWrite();
         return map.remove(key);
     }
 
@@ -124,19 +253,255 @@ public class MyBetterMap<K, V> implements Map<K, V> {
         // add up the sizes of the sub-maps
         int total = 0;
         for (MyLinearMap<K, V> map : maps) {
-            total += map.size();
+            if (map != null) {
+                total += map.size();
+            }
         }
         return total;
     }
 
+    /**
+     * Turns the collection of rehash times and load factor samples on or
+     * off.  While it is off, which is the default, the map does no extra
+     * work.  Turning it off discards what was collected.
+     *
+     * @param enabled
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            recorder = null;
+        } else if (recorder == null) {
+            recorder = new MapStatsRecorder();
+        }
+    }
+
+    public boolean isStatsEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * Counts a put or remove for the statistics, if they are enabled.
+     */
+    protected void recordWrite() {
+        if (recorder != null && recorder.tick()) {
+            recorder.sampleLoad((double) size() / maps.size());
+        }
+    }
+
+    /**
+     * Returns true if a rehash is in progress.
+     *
+     * @return
+     */
+    public boolean isRehashing() {
+        return false;
+    }
+
+    /**
+     * Returns the sub-maps that currently hold entries, with null for the
+     * ones that have not been made.
+     *
+     * @return
+     */
+    protected List<MyLinearMap<K, V>> chains() {
+        return maps;
+    }
+
+    /**
+     * Returns a snapshot of the statistics.
+     * <p>
+     * The chain lengths are computed now, by visiting every sub-map, so
+     * they are available even when statistics are not enabled.
+     *
+     * @return
+     */
+    public HashMapStats stats() {
+        int[] histogram = new int[1];
+        for (MyLinearMap<K, V> map : chains()) {
+            int length = map == null ? 0 : map.size();
+            if (length >= histogram.length) {
+                histogram = Arrays.copyOf(histogram, length + 1);
+            }
+            histogram[length]++;
+        }
+        return new HashMapStats(maps.size(), histogram, isRehashing(), recorder);
+    }
+
+    /**
+     * Registers an MXBean for this map's statistics with the platform
+     * MBeanServer, so they can be watched with JConsole or any JMX client.
+     * <p>
+     * The MXBean reads the map without synchronization, so if other threads
+     * are changing the map, the numbers are approximate.
+     *
+     * @param name distinguishes this map from others of the same class
+     * @return the name it was registered under, for unregistering it later
+     * @throws JMException
+     */
+    public ObjectName registerStatsMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.allendowney.thinkdast:type="
+                + getClass().getSimpleName() + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StatsMBean(), objectName);
+        return objectName;
+    }
+
+    private class StatsMBean implements HashMapStatsMXBean {
+        @Override
+        public int getSize() {
+            return stats().getSize();
+        }
+
+        @Override
+        public int getNumMaps() {
+            return stats().getNumMaps();
+        }
+
+        @Override
+        public double getLoadFactor() {
+            return stats().getLoadFactor();
+        }
+
+        @Override
+        public int[] getChainLengthHistogram() {
+            return stats().getChainLengthHistogram();
+        }
+
+        @Override
+        public int getMaxChainLength() {
+            return stats().getMaxChainLength();
+        }
+
+        @Override
+        public double getMeanChainLength() {
+            return stats().getMeanChainLength();
+        }
+
+        @Override
+        public boolean isRehashing() {
+            return MyBetterMap.this.isRehashing();
+        }
+
+        @Override
+        public boolean isStatsEnabled() {
+            return MyBetterMap.this.isStatsEnabled();
+        }
+
+        @Override
+        public long getRehashCount() {
+            return stats().getRehashCount();
+        }
+
+        @Override
+        public long getTotalRehashNanos() {
+            return stats().getTotalRehashNanos();
+        }
+
+        @Override
+        public long getMaxRehashNanos() {
+            return stats().getMaxRehashNanos();
+        }
+
+        @Override
+        public double[] getLoadFactorHistory() {
+            return stats().getLoadFactorHistory();
+        }
+    }
+
+    /**
+     * Returns a Spliterator over the entries, which splits by halving the
+     * range of sub-maps.  A range of one sub-map splits that sub-map's
+     * entries, so a badly skewed map can still be divided.
+     * <p>
+     * Map has no spliterator of its own; use
+     * `StreamSupport.stream(map.entrySpliterator(), true)` for a parallel stream.
+     *
+     * @return
+     */
+    public Spliterator<Entry<K, V>> entrySpliterator() {
+        return new BucketSpliterator(0, maps.size(), size());
+    }
+
+    /**
+     * Spliterator over a range of the sub-maps.
+     */
+    private class BucketSpliterator implements Spliterator<Entry<K, V>> {
+        private int index;                          // next sub-map to start
+        private final int fence;                    // one past the last sub-map
+        private long estimate;
+        private Spliterator<Entry<K, V>> current;   // entries of the sub-map in progress
+
+        public BucketSpliterator(int origin, int fence, long estimate) {
+            this.index = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (index < mid) {
+                // the entries are unordered, so this can split even after traversal starts
+                Spliterator<Entry<K, V>> prefix = new BucketSpliterator(index, mid, estimate >>>= 1);
+                index = mid;
+                return prefix;
+            }
+            // at most one sub-map is left, so split its entries
+            if (current == null && index < fence) {
+                current = spliteratorAt(index++);
+            }
+            if (current == null || index < fence) {
+                return null;
+            }
+            Spliterator<Entry<K, V>> prefix = current.trySplit();
+            estimate = current.estimateSize();
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+            while (current == null || !current.tryAdvance(action)) {
+                if (index >= fence) {
+                    current = null;
+                    return false;
+                }
+                current = spliteratorAt(index++);
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
+            if (current != null) {
+                current.forEachRemaining(action);
+                current = null;
+            }
+            for (; index < fence; index++) {
+                spliteratorAt(index).forEachRemaining(action);
+            }
+        }
+
+        private Spliterator<Entry<K, V>> spliteratorAt(int i) {
+            MyLinearMap<K, V> map = maps.get(i);
+            return map == null ? Spliterators.<Entry<K, V>>emptySpliterator() : map.entrySpliterator();
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL;
+        }
+    }
+
+    /**
+     * Returns a view of the values, which reads through to the map.
+     */
     @Override
     public Collection<V> values() {
-        // add up the valueSets from the sub-maps
-        Set<V> set = new HashSet<>();
-        for (MyLinearMap<K, V> map : maps) {
-            set.addAll(map.values());
-        }
-        return set;
+        return MapViews.values(this, this::entryIterator);
     }
 
 }
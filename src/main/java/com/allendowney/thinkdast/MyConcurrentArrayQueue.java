@@ -0,0 +1,362 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Bounded, lock-free queue for many producers and many consumers, based on
+ * Dmitry Vyukov's array queue.
+ * <p>
+ * Elements live in a circular array.  Each slot has a sequence number that
+ * says whether it is ready to be written (sequence == position) or ready to
+ * be read (sequence == position + 1).  Producers claim a position by CAS on
+ * the tail counter and consumers by CAS on the head counter, so threads only
+ * contend with other threads on the same end.  The two counters are padded
+ * so that they don't share a cache line.
+ * <p>
+ * `offer` and `poll` never block: they return false or null when the queue
+ * is full or empty.  Null elements are not allowed.  `size` is approximate
+ * while other threads are active, and iteration is weakly consistent.
+ * Removing from the middle (`remove(Object)`, `Iterator.remove`) is not
+ * supported.
+ *
+ * @param <E>
+ */
+public class MyConcurrentArrayQueue<E> extends AbstractQueue<E> {
+
+    /**
+     * A counter padded on both sides, so that it has a cache line to itself.
+     * The padding is split across classes because the JVM keeps superclass
+     * fields before subclass fields.
+     */
+    @SuppressWarnings("unused")
+    private static class LeftPadding {
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class Counter extends LeftPadding {
+        protected volatile long value;
+    }
+
+    @SuppressWarnings("unused")
+    private static class PaddedCounter extends Counter {
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        private static final AtomicLongFieldUpdater<Counter> UPDATER =
+                AtomicLongFieldUpdater.newUpdater(Counter.class, "value");
+
+        public long get() {
+            return value;
+        }
+
+        public boolean compareAndSet(long expect, long update) {
+            return UPDATER.compareAndSet(this, expect, update);
+        }
+    }
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final PaddedCounter head = new PaddedCounter();   // next position to read
+    private final PaddedCounter tail = new PaddedCounter();   // next position to write
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public MyConcurrentArrayQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity) {
+            n <<= 1;
+        }
+        items = new Object[n];
+        sequences = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            sequences.set(i, i);
+        }
+        mask = n - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[index] = element;
+                    // publishes the element to the consumer that reads this sequence
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                // the slot still holds an element from the previous lap
+                return false;
+            } else {
+                // another producer got here first
+                pos = tail.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    return take(index, pos);
+                }
+                pos = head.get();
+            } else if (dif < 0) {
+                // the slot has not been written yet
+                return null;
+            } else {
+                // another consumer got here first
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Reads the element in a slot this thread has claimed, and frees the
+     * slot for the producer one lap ahead.
+     */
+    @SuppressWarnings("unchecked")
+    private E take(int index, long pos) {
+        E element = (E) items[index];
+        items[index] = null;
+        sequences.lazySet(index, pos + mask + 1);
+        return element;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E peek() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                return null;
+            }
+            E element = (E) items[index];
+            // make sure the slot was not consumed while we were reading it
+            if (element != null && head.get() == pos) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Removes up to `maxElements` elements and adds them to `collection`.
+     * <p>
+     * Claims a run of ready slots with a single CAS, instead of one CAS per
+     * element.  The elements are taken out of the slots before any of them
+     * is added to `collection`, so the slots are freed even if `add` throws;
+     * in that case, the elements not yet added are lost.
+     *
+     * @param collection
+     * @param maxElements
+     * @return the number of elements transferred
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        if (collection == this) {
+            throw new IllegalArgumentException();
+        }
+        while (true) {
+            long pos = head.get();
+            int n = 0;
+            while (n < maxElements && n <= mask
+                    && sequences.get((int) (pos + n) & mask) == pos + n + 1) {
+                n++;
+            }
+            if (n == 0) {
+                return 0;
+            }
+            if (head.compareAndSet(pos, pos + n)) {
+                Object[] taken = new Object[n];
+                for (int i = 0; i < n; i++) {
+                    taken[i] = take((int) (pos + i) & mask, pos + i);
+                }
+                for (Object element : taken) {
+                    collection.add((E) element);
+                }
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Removes all available elements and adds them to `collection`.
+     *
+     * @param collection
+     * @return the number of elements transferred
+     */
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int size() {
+        // read head before and after tail, so we get a consistent pair
+        while (true) {
+            long before = head.get();
+            long currentTail = tail.get();
+            long after = head.get();
+            if (before == after) {
+                return (int) Math.max(0, Math.min(currentTail - after, mask + 1));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns a weakly consistent iterator from head to tail.
+     * <p>
+     * It never throws ConcurrentModificationException.  It returns elements
+     * that were in the queue at some point during the iteration, in order,
+     * but may skip elements that are polled or offered while it runs.
+     * `remove` is not supported.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        private final long end = tail.get();   // elements offered later are not seen
+        private long pos = head.get();
+        private E next;
+
+        Itr() {
+            advance();
+        }
+
+        /**
+         * Finds the next slot from `pos` that holds a published element, and
+         * reads it.
+         */
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (next == null) {
+                // skip the slots consumers have already taken
+                pos = Math.max(pos, head.get());
+                if (pos >= end) {
+                    return;
+                }
+                int index = (int) pos & mask;
+                if (sequences.get(index) == pos + 1) {
+                    E element = (E) items[index];
+                    // the element is still there if the sequence has not moved on
+                    if (sequences.get(index) == pos + 1) {
+                        next = element;
+                    }
+                }
+                pos++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            E element = next;
+            advance();
+            return element;
+        }
+    }
+
+    /**
+     * Measures throughput with several producers and consumers, compared to
+     * ConcurrentLinkedQueue.
+     *
+     * @param args
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        int perProducer = 2000000;
+        for (int rep = 0; rep < 3; rep++) {
+            Queue<Integer> mine = new MyConcurrentArrayQueue<>(1 << 14);
+            Queue<Integer> jdk = new ConcurrentLinkedQueue<>();
+            System.out.println("MyConcurrentArrayQueue: "
+                    + run(mine, threads, perProducer) + " million ops/s");
+            System.out.println("ConcurrentLinkedQueue:  "
+                    + run(jdk, threads, perProducer) + " million ops/s");
+        }
+    }
+
+    private static long run(final Queue<Integer> queue, int threads, final int perProducer)
+            throws InterruptedException {
+        final AtomicLong consumed = new AtomicLong();
+        final long total = (long) threads * perProducer;
+        Thread[] workers = new Thread[threads * 2];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    Integer item = 1;
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!queue.offer(item)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            workers[threads + t] = new Thread() {
+                @Override
+                public void run() {
+                    while (consumed.get() < total) {
+                        if (queue.poll() != null) {
+                            consumed.incrementAndGet();
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return total * 2 * 1000 / elapsed;
+    }
+}
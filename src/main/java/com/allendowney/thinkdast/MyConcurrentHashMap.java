@@ -0,0 +1,556 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A thread-safe Map that many threads can read and update at once, for
+ * example to count terms while several threads index pages.
+ * <p>
+ * Like MyBetterMap, it spreads the keys over a collection of MyLinearMap,
+ * but the sub-maps are divided among a fixed number of stripes, each with
+ * its own lock and its own array of sub-maps.  Writers lock only the stripe
+ * that holds the key, so writers of different stripes don't wait for each
+ * other, and each stripe doubles its array on its own when it gets full.
+ * <p>
+ * Readers take no locks.  A sub-map is never modified once it is published:
+ * a writer copies it, changes the copy and stores the copy in the array,
+ * which is a volatile write.  Chains are short, so the copy is cheap, and a
+ * reader always sees a complete version of a sub-map.
+ * <p>
+ * The key may be null, but values may not, because `get` returning null
+ * has to mean the key is absent for `putIfAbsent`, `compute` and `merge`
+ * to be atomic.  keySet, values and entrySet are live views whose
+ * iterators are weakly consistent: they see each sub-map as it was at some
+ * moment during the iteration.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MyConcurrentHashMap<K, V> implements ConcurrentMap<K, V> {
+
+    // average number of entries per sub-map before a stripe grows
+    private static final double FACTOR = 1.0;
+
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int INITIAL_MAPS = 2;
+
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;       // log2 of the number of stripes
+
+    /**
+     *
+     */
+    public MyConcurrentHashMap() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param concurrency number of threads expected to write at once; it is
+     *                    rounded up to a power of two to get the number of stripes
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MyConcurrentHashMap(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Illegal concurrency: " + concurrency);
+        }
+        int n = 1;
+        while (n < concurrency) {
+            n <<= 1;
+        }
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeShift = Integer.numberOfTrailingZeros(n);
+    }
+
+    /**
+     * Mixes the high bits of the hash code into the low bits, which choose
+     * the stripe and the sub-map.
+     */
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe<K, V> stripeFor(int h) {
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    /**
+     * Returns the number of stripes, for testing.
+     *
+     * @return
+     */
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * One lock and the sub-maps it protects.
+     */
+    private static final class Stripe<K, V> {
+        // replaced as a whole when the stripe grows; readers use whichever they find
+        volatile AtomicReferenceArray<MyLinearMap<K, V>> maps =
+                new AtomicReferenceArray<>(INITIAL_MAPS);
+
+        // written while holding the lock
+        volatile int size;
+
+        private int indexFor(int h, int stripeShift, int length) {
+            return (h >>> stripeShift) & (length - 1);
+        }
+
+        V get(Object key, int h, int stripeShift) {
+            AtomicReferenceArray<MyLinearMap<K, V>> table = maps;
+            MyLinearMap<K, V> map = table.get(indexFor(h, stripeShift, table.length()));
+            return map == null ? null : map.get(key);
+        }
+
+        /**
+         * Publishes a copy of the key's sub-map in which the key maps to
+         * `value`, or is absent if `value` is null.  Must be called while
+         * holding the lock.
+         */
+        void write(K key, int h, int stripeShift, V value) {
+            AtomicReferenceArray<MyLinearMap<K, V>> table = maps;
+            int index = indexFor(h, stripeShift, table.length());
+            MyLinearMap<K, V> old = table.get(index);
+            MyLinearMap<K, V> copy = new MyLinearMap<>();
+            int delta = value == null ? 0 : 1;
+            if (old != null) {
+                for (Map.Entry<K, V> entry : old.getEntries()) {
+                    if (Objects.equals(key, entry.getKey())) {
+                        delta--;
+                    } else {
+                        copy.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            if (value != null) {
+                copy.put(key, value);
+            }
+            table.set(index, copy.isEmpty() ? null : copy);
+            size += delta;
+
+            if (size > table.length() * FACTOR) {
+                grow(table, stripeShift);
+            }
+        }
+
+        /**
+         * Doubles the number of sub-maps.  The old array is left as it is,
+         * so readers that are still using it see a consistent version.
+         */
+        private void grow(AtomicReferenceArray<MyLinearMap<K, V>> table, int stripeShift) {
+            AtomicReferenceArray<MyLinearMap<K, V>> bigger =
+                    new AtomicReferenceArray<>(table.length() * 2);
+            for (int i = 0; i < table.length(); i++) {
+                MyLinearMap<K, V> old = table.get(i);
+                if (old == null) {
+                    continue;
+                }
+                for (Map.Entry<K, V> entry : old.getEntries()) {
+                    int index = indexFor(hash(entry.getKey()), stripeShift, bigger.length());
+                    MyLinearMap<K, V> map = bigger.get(index);
+                    if (map == null) {
+                        map = new MyLinearMap<>();
+                        bigger.set(index, map);
+                    }
+                    map.put(entry.getKey(), entry.getValue());
+                }
+            }
+            maps = bigger;
+        }
+
+        void clear() {
+            maps = new AtomicReferenceArray<>(INITIAL_MAPS);
+            size = 0;
+        }
+
+        /**
+         * Returns the sub-maps of the current version.
+         */
+        List<MyLinearMap<K, V>> snapshot() {
+            AtomicReferenceArray<MyLinearMap<K, V>> table = maps;
+            List<MyLinearMap<K, V>> list = new ArrayList<>();
+            for (int i = 0; i < table.length(); i++) {
+                MyLinearMap<K, V> map = table.get(i);
+                if (map != null) {
+                    list.add(map);
+                }
+            }
+            return list;
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        int h = hash(key);
+        return stripeFor(h).get(key, h, stripeShift);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        for (Stripe<K, V> stripe : stripes) {
+            for (MyLinearMap<K, V> map : stripe.snapshot()) {
+                if (map.containsValue(target)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        int total = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            total += stripe.size;
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            stripe.write(key, h, stripeShift, value);
+            return old;
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        // check without the lock first, so the common case doesn't block
+        V old = stripe.get(key, h, stripeShift);
+        if (old != null) {
+            return old;
+        }
+        synchronized (stripe) {
+            old = stripe.get(key, h, stripeShift);
+            if (old == null) {
+                stripe.write(key, h, stripeShift, value);
+            }
+            return old;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            if (old != null) {
+                stripe.write(castKey(key), h, stripeShift, null);
+            }
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            if (old == null || !old.equals(value)) {
+                return false;
+            }
+            stripe.write(castKey(key), h, stripeShift, null);
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K castKey(Object key) {
+        // only used for a key that is already in the map, so it is a K
+        return (K) key;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue);
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            if (old == null || !old.equals(oldValue)) {
+                return false;
+            }
+            stripe.write(key, h, stripeShift, newValue);
+            return true;
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            if (old != null) {
+                stripe.write(key, h, stripeShift, value);
+            }
+            return old;
+        }
+    }
+
+    /**
+     * Computes the new value while holding the stripe's lock, so the update
+     * is atomic.  `function` should be short, and must not use this map.
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            V value = function.apply(key, old);
+            if (value != null || old != null) {
+                stripe.write(key, h, stripeShift, value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Computes the value while holding the stripe's lock, so it is computed
+     * at most once per key.  `function` should be short, and must not use
+     * this map.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        V old = stripe.get(key, h, stripeShift);
+        if (old != null) {
+            return old;
+        }
+        synchronized (stripe) {
+            old = stripe.get(key, h, stripeShift);
+            if (old != null) {
+                return old;
+            }
+            V value = function.apply(key);
+            if (value != null) {
+                stripe.write(key, h, stripeShift, value);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            if (old == null) {
+                return null;
+            }
+            V value = function.apply(key, old);
+            stripe.write(key, h, stripeShift, value);
+            return value;
+        }
+    }
+
+    /**
+     * Combines `value` with the current value while holding the stripe's
+     * lock, so `merge(word, 1, Integer::sum)` counts correctly from many
+     * threads.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        Stripe<K, V> stripe = stripeFor(h);
+        synchronized (stripe) {
+            V old = stripe.get(key, h, stripeShift);
+            V result = old == null ? value : function.apply(old, value);
+            stripe.write(key, h, stripeShift, result);
+            return result;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns a view of the keys, which reads through to the map.
+     */
+    @Override
+    public Set<K> keySet() {
+        return MapViews.keySet(this, EntryIterator::new);
+    }
+
+    /**
+     * Returns a view of the values, which reads through to the map.
+     */
+    @Override
+    public Collection<V> values() {
+        return MapViews.values(this, EntryIterator::new);
+    }
+
+    /**
+     * Returns a view of the entries, which reads through to the map.  The
+     * entries are immutable; use `put` to change a value.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return MapViews.entrySet(this, EntryIterator::new);
+    }
+
+    /**
+     * Visits the sub-maps of each stripe in turn.  It reads whichever array
+     * a stripe has when it gets there, and each sub-map it reads is never
+     * modified, so it needs no locks and never throws
+     * ConcurrentModificationException.  Its remove method removes the key
+     * from the map.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int stripeIndex = 0;                  // next stripe
+        private AtomicReferenceArray<MyLinearMap<K, V>> table;
+        private int mapIndex = 0;                     // next sub-map of table
+        private Iterator<? extends Map.Entry<K, V>> current = Collections.emptyIterator();
+        private Map.Entry<K, V> last;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (table == null || mapIndex == table.length()) {
+                    if (stripeIndex == stripes.length) {
+                        return false;
+                    }
+                    table = stripes[stripeIndex++].maps;
+                    mapIndex = 0;
+                    continue;
+                }
+                MyLinearMap<K, V> map = table.get(mapIndex++);
+                if (map != null) {
+                    current = map.getEntries().iterator();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = current.next();
+            last = new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            MyConcurrentHashMap.this.remove(last.getKey(), last.getValue());
+            last = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MyConcurrentHashMap(size=" + size() + ", stripes=" + stripes.length + ")";
+    }
+
+    /**
+     * Counts words from 1, 2, 4... threads, up to the number of processors,
+     * with this map and with a synchronized MyHashMap.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int perThread = 1000000;
+        String[] words = new String[10000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "word" + i;
+        }
+        for (int threads = 1; ; threads = Math.min(threads * 2, processors)) {
+            Map<String, Integer> mine = new MyConcurrentHashMap<>();
+            Map<String, Integer> locked = Collections.synchronizedMap(new MyHashMap<String, Integer>());
+            System.out.println(threads + " threads: MyConcurrentHashMap "
+                    + run(mine, words, threads, perThread) + ", synchronized MyHashMap "
+                    + run(locked, words, threads, perThread) + " million ops/s");
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+
+    private static long run(final Map<String, Integer> map, final String[] words,
+                            int threads, final int perThread) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        map.merge(words[random.nextInt(words.length)], 1, Integer::sum);
+                    }
+                }
+            };
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (long) threads * perThread * 1000 / elapsed;
+    }
+}
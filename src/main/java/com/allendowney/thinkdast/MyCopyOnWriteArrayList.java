@@ -0,0 +1,362 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe List for data that many threads read and few threads write,
+ * such as seed URLs, stopwords or routing tables.
+ * <p>
+ * The elements are kept in a MyArrayList that is never modified once it is
+ * published.  Reads and iteration take no locks: they use whichever version
+ * is current when they start, and an iterator keeps seeing that version even
+ * if the list changes.  Each write copies the current version, changes the
+ * copy and publishes it with a volatile write, so it costs O(n).  Writers
+ * hold a lock, so no writes are lost.
+ * <p>
+ * To make many changes at once, use `batch`, which copies the array once
+ * for the whole batch, and publishes all of the changes together.
+ *
+ * @param <E>
+ */
+public class MyCopyOnWriteArrayList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * A group of changes applied by `batch`.
+     *
+     * @param <E>
+     */
+    public interface Batch<E> {
+        /**
+         * Makes changes to `list`, a private copy of the current elements.
+         * The list must not be used after this method returns.
+         *
+         * @param list
+         */
+        void apply(List<E> list);
+    }
+
+    private final Object lock = new Object();    // held by writers
+    private volatile MyArrayList<E> current;     // never modified once published
+
+    /**
+     *
+     */
+    public MyCopyOnWriteArrayList() {
+        current = new MyArrayList<>();
+    }
+
+    /**
+     * @param collection initial elements
+     */
+    public MyCopyOnWriteArrayList(Collection<? extends E> collection) {
+        this();
+        addAll(collection);
+    }
+
+    /**
+     * Returns a read-only view of the current version, which does not change
+     * when the list does.
+     *
+     * @return
+     */
+    public List<E> snapshot() {
+        return new Snapshot<>(current);
+    }
+
+    /**
+     * A read-only view of one version.  AbstractList provides equals,
+     * hashCode and an iterator whose remove is not supported.
+     */
+    private static class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final MyArrayList<E> list;
+
+        public Snapshot(MyArrayList<E> list) {
+            this.list = list;
+        }
+
+        @Override
+        public E get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public Object[] toArray() {
+            return list.toArray();
+        }
+    }
+
+    @Override
+    public E get(int index) {
+        return current.get(index);
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public int indexOf(Object target) {
+        return current.indexOf(target);
+    }
+
+    @Override
+    public int lastIndexOf(Object target) {
+        return current.lastIndexOf(target);
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return current.contains(obj);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return current.toArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T[] toArray(T[] array) {
+        Object[] elements = current.toArray();
+        if (array.length < elements.length) {
+            return (T[]) Arrays.copyOf(elements, elements.length, array.getClass());
+        }
+        System.arraycopy(elements, 0, array, 0, elements.length);
+        if (array.length > elements.length) {
+            array[elements.length] = null;
+        }
+        return array;
+    }
+
+    /**
+     * The iterator sees the version that was current when it was made, and
+     * does not support remove, set or add.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return snapshot().listIterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        return snapshot().listIterator(index);
+    }
+
+    /**
+     * Returns a read-only view of a range of the current version.
+     */
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return snapshot().subList(fromIndex, toIndex);
+    }
+
+    /**
+     * Makes a copy of the current version with room for `extra` more
+     * elements.  Must be called while holding the lock.
+     */
+    private MyArrayList<E> copy(int extra) {
+        MyArrayList<E> list = current;
+        return new MyArrayList<>(list, list.size() + extra);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(0);
+            E old = copy.set(index, element);
+            current = copy;
+            return old;
+        }
+    }
+
+    @Override
+    public boolean add(E element) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(1);
+            copy.add(element);
+            current = copy;
+            return true;
+        }
+    }
+
+    @Override
+    public void add(int index, E element) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(1);
+            copy.add(index, element);
+            current = copy;
+        }
+    }
+
+    /**
+     * Adds the element unless it is already present.
+     *
+     * @param element
+     * @return true if the element was added
+     */
+    public boolean addIfAbsent(E element) {
+        // check without the lock first, so the common case doesn't copy or block
+        if (current.contains(element)) {
+            return false;
+        }
+        synchronized (lock) {
+            if (current.contains(element)) {
+                return false;
+            }
+            MyArrayList<E> copy = copy(1);
+            copy.add(element);
+            current = copy;
+            return true;
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        synchronized (lock) {
+            // read the size under the lock, so we append to the version we copy
+            return addAll(current.size(), collection);
+        }
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> collection) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(collection.size());
+            boolean changed = copy.addAll(index, collection);
+            if (changed) {
+                current = copy;
+            }
+            return changed;
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(0);
+            E old = copy.remove(index);
+            current = copy;
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        synchronized (lock) {
+            int index = current.indexOf(obj);
+            if (index == -1) {
+                return false;
+            }
+            MyArrayList<E> copy = copy(0);
+            copy.remove(index);
+            current = copy;
+            return true;
+        }
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return collection.contains(element);
+            }
+        });
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return !collection.contains(element);
+            }
+        });
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        synchronized (lock) {
+            MyArrayList<E> copy = copy(0);
+            boolean changed = copy.removeIf(filter);
+            if (changed) {
+                current = copy;
+            }
+            return changed;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            current = new MyArrayList<>();
+        }
+    }
+
+    /**
+     * Applies a group of changes with one copy of the array.
+     * <p>
+     * Readers see either none of the changes or all of them.  If `batch`
+     * throws an exception, none of the changes are published.  Other writers
+     * wait until the batch is done, so it should not block.
+     *
+     * @param batch
+     */
+    public void batch(Batch<E> batch) {
+        synchronized (lock) {
+            // leave room to grow by half, so a batch of adds rarely copies again
+            MyArrayList<E> copy = copy(current.size() / 2 + 1);
+            batch.apply(copy);
+            current = copy;
+        }
+    }
+
+    /**
+     * Compares the cost of adding elements one at a time and in a batch.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = 20000;
+        MyCopyOnWriteArrayList<Integer> one = new MyCopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            one.add(i);
+        }
+        long each = System.nanoTime() - start;
+
+        MyCopyOnWriteArrayList<Integer> all = new MyCopyOnWriteArrayList<>();
+        final int count = n;
+        start = System.nanoTime();
+        all.batch(new Batch<Integer>() {
+            @Override
+            public void apply(List<Integer> list) {
+                for (int i = 0; i < count; i++) {
+                    list.add(i);
+                }
+            }
+        });
+        long batch = System.nanoTime() - start;
+
+        System.out.println("one at a time: " + each / 1000000 + " ms, batch: "
+                + batch / 1000000 + " ms, equal: " + one.equals(all));
+    }
+}
@@ -0,0 +1,500 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implementation of a Map using open addressing, with linear probing and
+ * Robin Hood displacement.
+ * <p>
+ * Keys, values and hash codes are stored in three parallel arrays, so a
+ * lookup usually reads one slot of each and follows no pointers, and there
+ * is no Entry object per key.  When a new key collides, it takes the slot
+ * of any key that is closer to its home slot, so probe sequences stay
+ * short and even, and a lookup for a missing key can stop as soon as it
+ * passes where the key would have been.  Removal shifts the rest of the
+ * cluster back by one slot instead of leaving a tombstone.
+ * <p>
+ * The views returned by keySet, values and entrySet read through to the
+ * map, and removing through them or their iterators removes from the map.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MyFlatHashMap<K, V> implements Map<K, V> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final double MAX_LOAD = 0.75;
+
+    // stands in for the null key, so null in `keys` always means an empty slot
+    private static final Object NULL_KEY = new Object();
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;        // spread hash of each key, or 0 for an empty slot
+    private int mask;            // capacity - 1
+    private int size;
+    private int threshold;       // grow when size reaches this
+    private int modCount;
+
+    /**
+     *
+     */
+    public MyFlatHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without growing
+     */
+    public MyFlatHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal size: " + expectedSize);
+        }
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / MAX_LOAD) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * MAX_LOAD);
+    }
+
+    /**
+     * Mixes the bits of the hash code, so keys whose hash codes differ only
+     * in the high bits still land in different slots.  Never returns 0.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h == 0 ? 1 : h;
+    }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K unmaskNull(Object key) {
+        return key == NULL_KEY ? null : (K) key;
+    }
+
+    /**
+     * Returns how far the entry in `slot` is from its home slot.
+     */
+    private int probeDistance(int slot) {
+        return (slot - hashes[slot]) & mask;
+    }
+
+    /**
+     * Returns the slot that holds the key, or -1 if there is none.
+     */
+    private int findSlot(Object key) {
+        Object k = maskNull(key);
+        int h = hash(k);
+        int slot = h & mask;
+        for (int dist = 0; ; dist++) {
+            int slotHash = hashes[slot];
+            if (slotHash == 0 || probeDistance(slot) < dist) {
+                // an empty slot, or a key that is closer to home than this
+                // one would be, so the key is not in the map
+                return -1;
+            }
+            if (slotHash == h && k.equals(keys[slot])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(hashes, 0);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean containsKey(Object target) {
+        return findSlot(target) != -1;
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0 && Objects.equals(target, values[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        int slot = findSlot(key);
+        return slot == -1 ? null : (V) values[slot];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V put(K key, V value) {
+        int slot = findSlot(key);
+        if (slot != -1) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        if (size >= threshold) {
+            resize(keys.length * 2);
+        }
+        Object k = maskNull(key);
+        insert(hash(k), k, value);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    /**
+     * Inserts a key that is not in the map, moving richer entries out of
+     * the way.  The table must have an empty slot.
+     */
+    private void insert(int h, Object key, Object value) {
+        int slot = h & mask;
+        for (int dist = 0; ; dist++) {
+            if (hashes[slot] == 0) {
+                hashes[slot] = h;
+                keys[slot] = key;
+                values[slot] = value;
+                return;
+            }
+            int existing = probeDistance(slot);
+            if (existing < dist) {
+                // the resident is closer to home, so it gives up the slot
+                int h2 = hashes[slot];
+                Object key2 = keys[slot];
+                Object value2 = values[slot];
+                hashes[slot] = h;
+                keys[slot] = key;
+                values[slot] = value;
+                h = h2;
+                key = key2;
+                value = value2;
+                dist = existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != 0) {
+                insert(oldHashes[i], oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        int needed = tableSizeFor(size + map.size());
+        if (needed > keys.length) {
+            resize(needed);
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(Object key) {
+        int slot = findSlot(key);
+        if (slot == -1) {
+            return null;
+        }
+        V old = (V) values[slot];
+        removeSlot(slot);
+        return old;
+    }
+
+    /**
+     * Removes the entry in `slot` and shifts the following entries in the
+     * cluster back by one, until one is in its home slot or a slot is empty.
+     */
+    private void removeSlot(int slot) {
+        int next = (slot + 1) & mask;
+        while (hashes[next] != 0 && probeDistance(next) > 0) {
+            hashes[slot] = hashes[next];
+            keys[slot] = keys[next];
+            values[slot] = values[next];
+            slot = next;
+            next = (next + 1) & mask;
+        }
+        hashes[slot] = 0;
+        keys[slot] = null;
+        values[slot] = null;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the capacity of the table, for testing.
+     *
+     * @return
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the longest distance of any entry from its home slot.
+     *
+     * @return
+     */
+    public int maxProbeDistance() {
+        int max = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0) {
+                max = Math.max(max, probeDistance(i));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new SlotIterator<K>() {
+                    @Override
+                    K get(int slot) {
+                        return unmaskNull(keys[slot]);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object obj) {
+                return containsKey(obj);
+            }
+
+            @Override
+            public boolean remove(Object obj) {
+                int slot = findSlot(obj);
+                if (slot == -1) {
+                    return false;
+                }
+                removeSlot(slot);
+                return true;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                MyFlatHashMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<V>() {
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    V get(int slot) {
+                        return (V) values[slot];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new SlotIterator<Map.Entry<K, V>>() {
+                    @Override
+                    Map.Entry<K, V> get(int slot) {
+                        return new Entry(slot);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Entry that reads and writes a slot of the table.
+     */
+    private class Entry implements Map.Entry<K, V> {
+        private final int slot;
+
+        public Entry(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public K getKey() {
+            return unmaskNull(keys[slot]);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V getValue() {
+            return (V) values[slot];
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = getValue();
+            values[slot] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) obj;
+            return Objects.equals(getKey(), that.getKey()) && Objects.equals(getValue(), that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * Visits the occupied slots, going once around the table from an empty
+     * slot.  Fails fast if the map is structurally modified other than
+     * through `remove`.
+     * <p>
+     * Starting from an empty slot means no cluster wraps around past the
+     * start, so when `remove` shifts the rest of a cluster back by one, the
+     * shifted entries are all ones the iterator hasn't visited yet, and the
+     * first of them is now in the slot it just removed.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        private final int start = emptySlot();
+        private int offset = advance(1);      // of the next slot from start
+        private int lastOffset = -1;          // of the slot next returned
+        private int expectedModCount = modCount;
+
+        private int emptySlot() {
+            // the load factor is less than 1, so there is always one
+            int slot = 0;
+            while (hashes[slot] != 0) {
+                slot++;
+            }
+            return slot;
+        }
+
+        private int advance(int from) {
+            while (from < hashes.length && hashes[(start + from) & mask] == 0) {
+                from++;
+            }
+            return from;
+        }
+
+        abstract T get(int slot);
+
+        @Override
+        public boolean hasNext() {
+            return offset < hashes.length;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (offset >= hashes.length) {
+                throw new NoSuchElementException();
+            }
+            T result = get((start + offset) & mask);
+            lastOffset = offset;
+            offset = advance(offset + 1);
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (lastOffset < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeSlot((start + lastOffset) & mask);
+            expectedModCount = modCount;
+            offset = advance(lastOffset);
+            lastOffset = -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MyFlatHashMap(size=" + size + ", capacity=" + keys.length + ")";
+    }
+}
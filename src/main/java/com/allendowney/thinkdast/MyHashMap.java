@@ -1,11 +1,28 @@
 package com.allendowney.thinkdast;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
 
 /**
  * Implementation of a HashMap using a collection of MyLinearMap and
  * resizing when there are too many entries.
+ * <p>
+ * Resizing is incremental: when the map grows, it keeps the old maps next
+ * to the new ones and moves a few of the old maps on each later get, put
+ * or remove.  So no single operation has to move every entry, and since
+ * the new maps are made as keys reach them, starting a resize doesn't
+ * allocate the whole table of sub-maps either.
+ * <p>
+ * The map doubles the number of sub-maps when the average number of
+ * entries per sub-map passes the load factor, and halves it when the
+ * average falls below a quarter of the load factor, but never below the
+ * number it started with or was last given by `ensureCapacity` or
+ * `trimToSize`.  To avoid resizing while loading many entries, give the
+ * expected size to the constructor, or call `ensureCapacity` or `putAll`,
+ * which size the table once.
  *
  * @param <K>
  * @param <V>
@@ -13,42 +30,339 @@ import java.util.Map;
  */
 public class MyHashMap<K, V> extends MyBetterMap<K, V> implements Map<K, V> {
 
-    // average number of entries per map before we rehash
+    // average number of entries per map before we rehash, by default
     protected static final double FACTOR = 1.0;
 
+    // shrink when the average number of entries per map is below
+    // loadFactor * SHRINK_FACTOR
+    protected static final double SHRINK_FACTOR = 0.25;
+
+    private static final int MIN_MAPS = 2;
+    private static final int MAX_MAPS = 1 << 30;
+
+    // number of old maps moved by each operation while rehashing
+    protected static final int MIGRATE_STEP = 4;
+
+    // maps being moved out of during a rehash, or null
+    protected List<MyLinearMap<K, V>> oldMaps;
+
+    // old maps before this index have been moved to `maps`
+    protected int migrated;
+
+    private int size;            // total number of entries, old and new
+
+    private final double loadFactor;
+    private int minMaps;         // never shrink below this many maps
+
+    /**
+     *
+     */
+    public MyHashMap() {
+        this(0, FACTOR, Hasher.MIXED);
+    }
+
+    /**
+     * @param hasher computes the hash that chooses the sub-map
+     */
+    public MyHashMap(Hasher hasher) {
+        this(0, FACTOR, hasher);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without resizing
+     */
+    public MyHashMap(int expectedSize) {
+        this(expectedSize, FACTOR, Hasher.MIXED);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without resizing
+     * @param loadFactor   average number of entries per map before it grows
+     */
+    public MyHashMap(int expectedSize, double loadFactor) {
+        this(expectedSize, loadFactor, Hasher.MIXED);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without resizing
+     * @param loadFactor   average number of entries per map before it grows
+     * @param hasher       computes the hash that chooses the sub-map
+     */
+    public MyHashMap(int expectedSize, double loadFactor, Hasher hasher) {
+        super(hasher, tableSizeFor(checkSize(expectedSize), checkLoadFactor(loadFactor)));
+        this.loadFactor = loadFactor;
+        this.minMaps = maps.size();
+    }
+
+    private static int checkSize(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal size: " + expectedSize);
+        }
+        return expectedSize;
+    }
+
+    private static double checkLoadFactor(double loadFactor) {
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        return loadFactor;
+    }
+
+    /**
+     * Returns the number of maps needed to hold `expectedSize` entries
+     * without growing: a power of two, at least MIN_MAPS.
+     */
+    private static int tableSizeFor(int expectedSize, double loadFactor) {
+        double needed = Math.ceil(expectedSize / loadFactor);
+        int numMaps = MIN_MAPS;
+        while (numMaps < needed && numMaps < MAX_MAPS) {
+            numMaps <<= 1;
+        }
+        return numMaps;
+    }
+
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
     @Override
-    public V put(K key, V value) {
-        V oldValue = super.put(key, value);
+    public void clear() {
+        // let go of the peak table, too
+        makeMaps(minMaps);
+        oldMaps = null;
+        migrated = 0;
+        size = 0;
+    }
 
-        System.out.println("Put " + key + " in " + maps + " size now " + maps.size());
+    /**
+     * Finds the map that holds the key, which is one of the old maps if
+     * the key's old map has not been moved yet.  An old map that was never
+     * made holds no keys, so those keys go straight to the new maps.
+     */
+    @Override
+    protected MyLinearMap<K, V> chooseMap(Object key) {
+        if (oldMaps != null) {
+            int index = indexFor(key, oldMaps.size());
+            if (index >= migrated && oldMaps.get(index) != null) {
+                return oldMaps.get(index);
+            }
+        }
+        return super.chooseMap(key);
+    }
+
+    @Override
+    public boolean containsKey(Object target) {
+        migrateSome();
+        return super.containsKey(target);
+    }
+
+    @Override
+    public V get(Object key) {
+        migrateSome();
+        return super.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        migrateSome();
+        MyLinearMap<K, V> map = chooseMap(key);
+        int before = map.size();
+        V oldValue = map.put(key, value);
+        size += map.size() - before;
+        recordWrite();
 
         // check if the number of elements per map exceeds the threshold
-        if (size() > maps.size() * FACTOR) {
+        if (oldMaps == null && size > maps.size() * loadFactor && maps.size() < MAX_MAPS) {
             rehash();
         }
         return oldValue;
     }
 
+    @Override
+    public V remove(Object key) {
+        migrateSome();
+        MyLinearMap<K, V> map = chooseMap(key);
+        int before = map.size();
+        V oldValue = map.remove(key);
+        size += map.size() - before;
+        recordWrite();
+
+        shrinkIfSparse();
+        return oldValue;
+    }
+
+    /**
+     * Starts shrinking the table if the number of elements per map fell
+     * below the low-water mark.  The new table is half full, so it has
+     * room to grow before it resizes again.
+     */
+    private void shrinkIfSparse() {
+        if (oldMaps == null && maps.size() > minMaps
+                && size < maps.size() * loadFactor * SHRINK_FACTOR) {
+            resize(Math.max(minMaps, tableSizeFor(size * 2, loadFactor)));
+        }
+    }
+
     @Override
     public int size() {
-        return super.size();
+        return size;
     }
 
     /**
-     * Doubles the number of maps and rehashes the existing entries.
+     * Doubles the number of maps.  The existing entries are moved a few
+     * maps at a time by later operations.
      */
     protected void rehash() {
-        System.out.println("rehash();");
         // 배열 크기를 두배 증가시켜 탐색속도를 O(1)로 만든다.
-        List<MyLinearMap<K, V>> oldMaps = maps;
-        makeMaps(maps.size() * 2);
-        for (MyLinearMap<K, V> map : oldMaps) {
-            for (Entry<K, V> e : map.getEntries()) {
-                put(e.getKey(), e.getValue());
+        resize(maps.size() * 2);
+    }
+
+    /**
+     * Starts moving the entries to `numMaps` new maps, which works the same
+     * way whether the table grows or shrinks.
+     *
+     * @param numMaps a power of two
+     */
+    protected void resize(int numMaps) {
+        finishRehash();
+        long start = recorder == null ? 0 : System.nanoTime();
+        oldMaps = maps;
+        migrated = 0;
+        makeMaps(numMaps);
+        if (recorder != null) {
+            recorder.rehashStarted(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Makes the table big enough to hold `expectedSize` entries without
+     * growing, moving the entries now if it has to resize.  The table
+     * won't shrink below this size until `trimToSize` is called.
+     *
+     * @param expectedSize
+     */
+    public void ensureCapacity(int expectedSize) {
+        int numMaps = tableSizeFor(checkSize(expectedSize), loadFactor);
+        minMaps = Math.max(minMaps, numMaps);
+        if (numMaps > maps.size()) {
+            resize(numMaps);
+            finishRehash();
+        }
+    }
+
+    /**
+     * Shrinks the table to the smallest size that holds the current
+     * entries, moving the entries now.  After that, the table may shrink
+     * down to this size again.
+     */
+    public void trimToSize() {
+        int numMaps = tableSizeFor(size, loadFactor);
+        minMaps = numMaps;
+        finishRehash();
+        if (numMaps != maps.size()) {
+            resize(numMaps);
+            finishRehash();
+        }
+    }
+
+    /**
+     * Sizes the table once for all of the new entries, then adds them.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        ensureCapacity(size + map.size());
+        super.putAll(map);
+    }
+
+    @Override
+    public boolean isRehashing() {
+        return oldMaps != null;
+    }
+
+    /**
+     * Returns the new maps, and the old maps that have not moved yet.
+     */
+    @Override
+    protected List<MyLinearMap<K, V>> chains() {
+        if (oldMaps == null) {
+            return maps;
+        }
+        List<MyLinearMap<K, V>> chains = new ArrayList<>(maps);
+        chains.addAll(oldMaps.subList(migrated, oldMaps.size()));
+        return chains;
+    }
+
+    /**
+     * Moves up to MIGRATE_STEP of the old maps into the new ones.
+     */
+    private void migrateSome() {
+        if (oldMaps == null) {
+            return;
+        }
+        long start = recorder == null ? 0 : System.nanoTime();
+        int end = Math.min(migrated + MIGRATE_STEP, oldMaps.size());
+        for (; migrated < end; migrated++) {
+            MyLinearMap<K, V> old = oldMaps.get(migrated);
+            if (old == null) {
+                continue;
             }
+            for (Entry<K, V> e : old.getEntries()) {
+                super.chooseMap(e.getKey()).put(e.getKey(), e.getValue());
+            }
+            // let the garbage collector have it
+            oldMaps.set(migrated, null);
+        }
+        boolean done = migrated == oldMaps.size();
+        if (done) {
+            oldMaps = null;
+        }
+        if (recorder != null) {
+            recorder.rehashWork(System.nanoTime() - start);
+        }
+        if (done) {
+            // entries may have been removed faster than they moved
+            shrinkIfSparse();
         }
     }
 
+    /**
+     * Moves all of the remaining old maps, before an operation that visits
+     * every entry.
+     */
+    protected void finishRehash() {
+        while (oldMaps != null) {
+            migrateSome();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        finishRehash();
+        return super.containsValue(target);
+    }
+
+    /**
+     * Finishes any rehash first, so the iterator only has to visit the new
+     * maps.  Making a view doesn't do this; only iterating over it does,
+     * and the iteration visits every entry anyway.
+     */
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator() {
+        finishRehash();
+        return super.entryIterator();
+    }
+
+    @Override
+    protected void removedByIterator() {
+        size--;
+    }
+
+    @Override
+    public Spliterator<Entry<K, V>> entrySpliterator() {
+        finishRehash();
+        return super.entrySpliterator();
+    }
+
     public static void main(String[] args) {
         Map<String, Integer> map = new MyHashMap<>();
         for (int i = 0; i < 10; i++) {
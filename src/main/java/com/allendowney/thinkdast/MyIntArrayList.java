@@ -0,0 +1,183 @@
+package com.allendowney.thinkdast;
+
+import java.util.Arrays;
+
+/**
+ * A list of primitive ints that grows like MyArrayList, but stores the
+ * elements in an int[] so that no element is ever boxed.
+ * <p>
+ * Because `remove(int)` would be ambiguous between an index and a value,
+ * removing by index is `remove` and removing by value is `removeValue`.
+ */
+public class MyIntArrayList {
+    private int size;            // keeps track of the number of elements
+    private int[] array;         // stores the elements
+
+    /**
+     *
+     */
+    public MyIntArrayList() {
+        array = new int[10];
+        size = 0;
+    }
+
+    /**
+     * Appends an element, doubling the array if it is full.
+     *
+     * @param element
+     * @return true
+     */
+    public boolean add(int element) {
+        if (size >= array.length) {
+            grow();
+        }
+        array[size] = element;
+        size++;
+        return true;
+    }
+
+    /**
+     * Inserts an element at the given index, shifting the rest to the right.
+     *
+     * @param index
+     * @param element
+     */
+    public void add(int index, int element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (size >= array.length) {
+            grow();
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = element;
+        size++;
+    }
+
+    /**
+     * Makes a bigger array and copies over the elements.
+     */
+    private void grow() {
+        array = Arrays.copyOf(array, array.length * 2);
+    }
+
+    /**
+     * Returns the length of the backing array, for testing.
+     */
+    int capacity() {
+        return array.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int element) {
+        return indexOf(element) != -1;
+    }
+
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return array[index];
+    }
+
+    public int indexOf(int target) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int lastIndexOf(int target) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (array[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the element at the given index.
+     *
+     * @param index
+     * @return the element that was removed
+     */
+    public int remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        int old = array[index];
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        return old;
+    }
+
+    /**
+     * Removes the first occurrence of the given value.
+     *
+     * @param element
+     * @return true if the list contained the value
+     */
+    public boolean removeValue(int element) {
+        int index = indexOf(element);
+        if (index == -1) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    public int set(int index, int element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        int old = array[index];
+        array[index] = element;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the elements into ascending numerical order.
+     */
+    public void sort() {
+        Arrays.sort(array, 0, size);
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        // run a few simple tests
+        MyIntArrayList mial = new MyIntArrayList();
+        mial.add(3);
+        mial.add(1);
+        mial.add(2);
+        System.out.println(mial + " size = " + mial.size());
+
+        mial.sort();
+        mial.removeValue(2);
+        System.out.println(mial + " size = " + mial.size());
+    }
+}
@@ -2,11 +2,12 @@ package com.allendowney.thinkdast;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
 
 /**
  * Implementation of a Map using a List of entries, so most
@@ -41,8 +42,9 @@ public class MyLinearMap<K, V> implements Map<K, V> {
 
         @Override
         public V setValue(V newValue) {
+            V oldValue = value;
             value = newValue;
-            return value;
+            return oldValue;
         }
     }
 
@@ -94,9 +96,23 @@ public class MyLinearMap<K, V> implements Map<K, V> {
         return false;
     }
 
+    /**
+     * Returns a view of the entries, which reads through to the map.
+     */
     @Override
     public Set<Map.Entry<K, V>> entrySet() {
-        throw new UnsupportedOperationException();
+        return MapViews.entrySet(this, this::entryIterator);
+    }
+
+    /**
+     * Returns an iterator over the entries, whose remove method removes
+     * from the map.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected Iterator<Map.Entry<K, V>> entryIterator() {
+        return (Iterator<Map.Entry<K, V>>) (Iterator<?>) entries.iterator();
     }
 
     @Override
@@ -113,13 +129,12 @@ public class MyLinearMap<K, V> implements Map<K, V> {
         return entries.isEmpty();
     }
 
+    /**
+     * Returns a view of the keys, which reads through to the map.
+     */
     @Override
     public Set<K> keySet() {
-        Set<K> set = new HashSet<K>();
-        for (Entry entry : entries) {
-            set.add(entry.getKey());
-        }
-        return set;
+        return MapViews.keySet(this, this::entryIterator);
     }
 
     @Override
@@ -156,13 +171,12 @@ public class MyLinearMap<K, V> implements Map<K, V> {
         return entries.size();
     }
 
+    /**
+     * Returns a view of the values, which reads through to the map.
+     */
     @Override
     public Collection<V> values() {
-        Set<V> set = new HashSet<V>();
-        for (Entry entry : entries) {
-            set.add(entry.getValue());
-        }
-        return set;
+        return MapViews.values(this, this::entryIterator);
     }
 
     /**
@@ -180,6 +194,19 @@ public class MyLinearMap<K, V> implements Map<K, V> {
         }
     }
 
+    /**
+     * Returns a Spliterator over the entries, which splits by index range.
+     * <p>
+     * Map has no spliterator of its own; use
+     * `StreamSupport.stream(map.entrySpliterator(), true)` for a parallel stream.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Spliterator<Map.Entry<K, V>> entrySpliterator() {
+        return (Spliterator<Map.Entry<K, V>>) (Spliterator<?>) entries.spliterator();
+    }
+
     /**
      * Returns a reference to `entries`.
      * <p>
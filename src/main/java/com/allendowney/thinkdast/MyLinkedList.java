@@ -1,50 +1,67 @@
 package com.allendowney.thinkdast;
 
+import java.util.AbstractSequentialList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
+ * Doubly-linked list with sentinel nodes at both ends, so adding or removing
+ * at either end, or at the cursor of a ListIterator, takes constant time.
+ *
  * @param <E>
  * @author downey
  */
-public class MyLinkedList<E> implements List<E> {
+public class MyLinkedList<E> implements List<E>, Deque<E> {
 
     /**
      * Node is identical to ListNode from the example, but parameterized with T
+     * and linked in both directions.
      *
      * @author downey
      */
     private class Node {
         public E data;
+        public Node prev;
         public Node next;
 
         public Node(E data) {
             this.data = data;
-            this.next = null;
         }
 
-        @SuppressWarnings("unused")
-        public Node(E data, Node next) {
+        public Node(E data, Node prev, Node next) {
             this.data = data;
+            this.prev = prev;
             this.next = next;
         }
 
         public String toString() {
-            return "Node(" + data.toString() + ")";
+            return "Node(" + data + ")";
         }
     }
 
     private int size;            // keeps track of the number of elements
-    private Node head;           // reference to the first node
+    private final Node head;     // sentinel before the first node
+    private final Node tail;     // sentinel after the last node
+    private int modCount;        // counts structural changes, for fail-fast iterators
 
     /**
      *
      */
     public MyLinkedList() {
-        head = null;
+        head = new Node(null);
+        tail = new Node(null);
+        head.next = tail;
+        tail.prev = head;
         size = 0;
     }
 
@@ -63,51 +80,77 @@ public class MyLinkedList<E> implements List<E> {
         System.out.println(Arrays.toString(mll.toArray()) + " size = " + mll.size());
     }
 
+    /**
+     * Makes a new node holding `element` and links it in before `succ`.
+     *
+     * @param element
+     * @param succ
+     */
+    private void linkBefore(E element, Node succ) {
+        Node node = new Node(element, succ.prev, succ);
+        succ.prev.next = node;
+        succ.prev = node;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Removes a node from the list.
+     *
+     * @param node
+     * @return the data that was in the node
+     */
+    private E unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        size--;
+        modCount++;
+        return node.data;
+    }
+
     @Override
     public boolean add(E element) {
-        if (head == null) {
-            head = new Node(element);
-        } else {
-            Node node = head;
-            // loop until the last node
-            for (; node.next != null; node = node.next) {
-            }
-            node.next = new Node(element);
-        }
-        size++;
+        linkBefore(element, tail);
         return true;
     }
 
     @Override
     public void add(int index, E element) {
-        //TODO: FILL THIS IN!
-        if (index < 0 || index > size) throw new IndexOutOfBoundsException();
-        if (index == 0) head = new Node(element, head);
-
-        Node node = head;
-        for (int i = 1; i < index; i++) node = node.next;
-        node.next = new Node(element, node.next);
-        size++;
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        linkBefore(element, index == size ? tail : getNode(index));
     }
 
     @Override
     public boolean addAll(Collection<? extends E> collection) {
-        boolean flag = true;
-        for (E element : collection) {
-            flag &= add(element);
-        }
-        return flag;
+        return addAll(size, collection);
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public boolean addAll(int index, Collection<? extends E> collection) {
-        throw new UnsupportedOperationException();
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        Object[] elements = collection.toArray();
+        if (elements.length == 0) {
+            return false;
+        }
+        // find the insertion point with one walk, then link in front of it
+        Node succ = (index == size) ? tail : getNode(index);
+        for (Object element : elements) {
+            linkBefore((E) element, succ);
+        }
+        return true;
     }
 
     @Override
     public void clear() {
-        head = null;
+        head.next = tail;
+        tail.prev = head;
         size = 0;
+        modCount++;
     }
 
     @Override
@@ -132,7 +175,7 @@ public class MyLinkedList<E> implements List<E> {
     }
 
     /**
-     * Returns the node at the given index.
+     * Returns the node at the given index, walking from whichever end is nearer.
      *
      * @param index
      * @return
@@ -141,20 +184,29 @@ public class MyLinkedList<E> implements List<E> {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException();
         }
-        Node node = head;
-        for (int i = 0; i < index; i++) {
-            node = node.next;
+        Node node;
+        if (index < size / 2) {
+            node = head.next;
+            for (int i = 0; i < index; i++) {
+                node = node.next;
+            }
+        } else {
+            node = tail.prev;
+            for (int i = size - 1; i > index; i--) {
+                node = node.prev;
+            }
         }
         return node;
     }
 
     @Override
     public int indexOf(Object target) {
-        //TODO: FILL THIS IN!
-        Node node = head;
-        for (int i = 0; i < size; i++) {
-            if (node.data == target || node.data.equals(target)) return i;
-            node = node.next;
+        int i = 0;
+        for (Node node = head.next; node != tail; node = node.next) {
+            if (equals(target, node.data)) {
+                return i;
+            }
+            i++;
         }
         return -1;
     }
@@ -182,76 +234,182 @@ public class MyLinkedList<E> implements List<E> {
 
     @Override
     public Iterator<E> iterator() {
-        E[] array = (E[]) toArray();
-        return Arrays.asList(array).iterator();
+        return new ListItr(0);
     }
 
     @Override
     public int lastIndexOf(Object target) {
-        Node node = head;
-        int index = -1;
-        for (int i = 0; i < size; i++) {
+        int i = size - 1;
+        for (Node node = tail.prev; node != head; node = node.prev) {
             if (equals(target, node.data)) {
-                index = i;
+                return i;
             }
-            node = node.next;
+            i--;
         }
-        return index;
+        return -1;
     }
 
     @Override
     public ListIterator<E> listIterator() {
-        return null;
+        return new ListItr(0);
     }
 
     @Override
     public ListIterator<E> listIterator(int index) {
-        return null;
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ListItr(index);
+    }
+
+    /**
+     * A ListIterator that can add and remove in constant time at its cursor.
+     * <p>
+     * If the list is structurally modified other than through this iterator,
+     * the next call throws ConcurrentModificationException.
+     */
+    private class ListItr implements ListIterator<E> {
+        private Node next;                      // node returned by the next call to next()
+        private int nextIndex;
+        private Node lastReturned;              // node returned by next() or previous(), or null
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            next = (index == size) ? tail : getNode(index);
+            nextIndex = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < size;
+        }
+
+        @Override
+        public E next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = next.next;
+            nextIndex++;
+            return lastReturned.data;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return nextIndex > 0;
+        }
+
+        @Override
+        public E previous() {
+            checkForComodification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            next = next.prev;
+            lastReturned = next;
+            nextIndex--;
+            return lastReturned.data;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            if (lastReturned == next) {
+                // we were going backward, so the cursor moves past the removed node
+                next = next.next;
+            } else {
+                nextIndex--;
+            }
+            unlink(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(E element) {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            lastReturned.data = element;
+        }
+
+        @Override
+        public void add(E element) {
+            checkForComodification();
+            linkBefore(element, next);
+            nextIndex++;
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
     }
 
     @Override
     public boolean remove(Object obj) {
-        int index = indexOf(obj);
-        if (index == -1) {
-            return false;
-        }
-        remove(index);
-        return true;
+        return removeFirstOccurrence(obj);
     }
 
     @Override
     public E remove(int index) {
-        //TODO: FILL THIS IN!
-        if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
-
-        Node p = null;
-        Node n = head;
-        for (int i = 0; i < index; i++) {
-            p = n;
-            n = n.next;
-        }
-        if (p == null) {
-            head = n.next;
-        } else {
-            p.next = n.next;
-        }
-        size--;
+        return unlink(getNode(index));
+    }
 
-        return n.data;
+    @Override
+    public boolean removeAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return collection.contains(element);
+            }
+        });
     }
 
     @Override
-    public boolean removeAll(Collection<?> collection) {
-        boolean flag = true;
-        for (Object obj : collection) {
-            flag &= remove(obj);
-        }
-        return flag;
+    public boolean retainAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return !collection.contains(element);
+            }
+        });
     }
 
+    /**
+     * Unlinks every node whose data matches the filter in a single walk.
+     *
+     * @param filter
+     * @return true if any element was removed
+     */
     @Override
-    public boolean retainAll(Collection<?> collection) {
-        throw new UnsupportedOperationException();
+    public boolean removeIf(Predicate<? super E> filter) {
+        int oldSize = size;
+        for (Node node = head.next; node != tail; node = node.next) {
+            if (filter.test(node.data)) {
+                unlink(node);
+            }
+        }
+        return size != oldSize;
     }
 
     @Override
@@ -269,27 +427,202 @@ public class MyLinkedList<E> implements List<E> {
 
     @Override
     public List<E> subList(int fromIndex, int toIndex) {
-        if (fromIndex < 0 || toIndex >= size || fromIndex > toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
             throw new IndexOutOfBoundsException();
         }
-        // TODO: classify this and improve it.
-        int i = 0;
-        MyLinkedList<E> list = new MyLinkedList<E>();
-        for (Node node = head; node != null; node = node.next) {
-            if (i >= fromIndex && i <= toIndex) {
-                list.add(node.data);
+        return new SubList(fromIndex, toIndex);
+    }
+
+    /**
+     * A view of a range of this list.
+     * <p>
+     * Changes through the view write through to this list.  If this list is
+     * structurally modified other than through the view, the view throws
+     * ConcurrentModificationException.
+     */
+    private class SubList extends AbstractSequentialList<E> {
+        private final int offset;               // index in this list of the first element
+        private int size;
+        private int expectedModCount = MyLinkedList.this.modCount;
+
+        SubList(int fromIndex, int toIndex) {
+            offset = fromIndex;
+            size = toIndex - fromIndex;
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            checkForComodification();
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException();
+            }
+            final ListIterator<E> iter = MyLinkedList.this.listIterator(offset + index);
+            return new ListIterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return nextIndex() < size;
+                }
+
+                @Override
+                public E next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iter.next();
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return previousIndex() >= 0;
+                }
+
+                @Override
+                public E previous() {
+                    if (!hasPrevious()) {
+                        throw new NoSuchElementException();
+                    }
+                    return iter.previous();
+                }
+
+                @Override
+                public int nextIndex() {
+                    return iter.nextIndex() - offset;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return iter.previousIndex() - offset;
+                }
+
+                @Override
+                public void remove() {
+                    iter.remove();
+                    updateSize(-1);
+                }
+
+                @Override
+                public void set(E element) {
+                    iter.set(element);
+                }
+
+                @Override
+                public void add(E element) {
+                    iter.add(element);
+                    updateSize(1);
+                }
+            };
+        }
+
+        private void checkForComodification() {
+            if (MyLinkedList.this.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private void updateSize(int delta) {
+            size += delta;
+            expectedModCount = MyLinkedList.this.modCount;
+            modCount++;
+        }
+    }
+
+    /**
+     * Returns a Spliterator that splits by copying a batch of elements into
+     * an array, since a linked list can't be cut in the middle in constant
+     * time.  The batches grow, so the cost of copying stays small compared
+     * to the work done on each batch.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new LinkedSpliterator();
+    }
+
+    private class LinkedSpliterator implements Spliterator<E> {
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private Node current;          // next node to visit, or null until bound
+        private int remaining = -1;    // number of elements left, or -1 until bound
+        private int batch;             // size of the last batch split off
+        private int expectedModCount;
+
+        private int getRemaining() {
+            if (remaining < 0) {
+                current = head.next;
+                remaining = size;
+                expectedModCount = modCount;
+            }
+            return remaining;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int n = Math.min(getRemaining(), Math.min(batch + BATCH_UNIT, MAX_BATCH));
+            if (n <= 1) {
+                return null;
+            }
+            Object[] array = new Object[n];
+            for (int i = 0; i < n; i++) {
+                array[i] = current.data;
+                current = current.next;
+            }
+            remaining -= n;
+            batch = n;
+            checkForComodification();
+            return Spliterators.spliterator(array, 0, n, ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (getRemaining() <= 0) {
+                return false;
+            }
+            E element = current.data;
+            current = current.next;
+            remaining--;
+            action.accept(element);
+            checkForComodification();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (int n = getRemaining(); n > 0; n--) {
+                action.accept(current.data);
+                current = current.next;
+            }
+            remaining = 0;
+            checkForComodification();
+        }
+
+        @Override
+        public long estimateSize() {
+            return getRemaining();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
-            i++;
         }
-        return list;
     }
 
     @Override
     public Object[] toArray() {
         Object[] array = new Object[size];
         int i = 0;
-        for (Node node = head; node != null; node = node.next) {
-            // System.out.println(node);
+        for (Node node = head.next; node != tail; node = node.next) {
             array[i] = node.data;
             i++;
         }
@@ -305,4 +638,158 @@ public class MyLinkedList<E> implements List<E> {
     public String toString() {
         return Arrays.toString(toArray());
     }
+
+    // Deque methods.  None of these traverse the list.
+
+    @Override
+    public void addFirst(E element) {
+        linkBefore(element, head.next);
+    }
+
+    @Override
+    public void addLast(E element) {
+        linkBefore(element, tail);
+    }
+
+    @Override
+    public boolean offerFirst(E element) {
+        addFirst(element);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(E element) {
+        addLast(element);
+        return true;
+    }
+
+    @Override
+    public E removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return unlink(head.next);
+    }
+
+    @Override
+    public E removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return unlink(tail.prev);
+    }
+
+    @Override
+    public E pollFirst() {
+        return (size == 0) ? null : unlink(head.next);
+    }
+
+    @Override
+    public E pollLast() {
+        return (size == 0) ? null : unlink(tail.prev);
+    }
+
+    @Override
+    public E getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.next.data;
+    }
+
+    @Override
+    public E getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return tail.prev.data;
+    }
+
+    @Override
+    public E peekFirst() {
+        return head.next.data;
+    }
+
+    @Override
+    public E peekLast() {
+        return tail.prev.data;
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object obj) {
+        for (Node node = head.next; node != tail; node = node.next) {
+            if (equals(obj, node.data)) {
+                unlink(node);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object obj) {
+        for (Node node = tail.prev; node != head; node = node.prev) {
+            if (equals(obj, node.data)) {
+                unlink(node);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        return offerLast(element);
+    }
+
+    @Override
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E element() {
+        return getFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(E element) {
+        addFirst(element);
+    }
+
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        final ListItr iter = new ListItr(size);
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasPrevious();
+            }
+
+            @Override
+            public E next() {
+                return iter.previous();
+            }
+
+            @Override
+            public void remove() {
+                iter.remove();
+            }
+        };
+    }
 }
@@ -0,0 +1,493 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe Map that takes no locks, so a thread that is slow or
+ * descheduled never holds up the others, even on a hot key.
+ * <p>
+ * It uses split-ordered lists (Shalev and Shavit): all entries are in one
+ * lock-free linked list, sorted by the bit-reversed hash code, and each
+ * bucket is a pointer to a dummy node somewhere in that list.  With this
+ * order, the entries of bucket b are followed by the entries that would
+ * move to bucket b + n if the number of buckets doubled, so resizing never
+ * moves an entry.  Doubling just changes `bucketCount`; each new bucket is
+ * initialized the first time it is used, by inserting its dummy node after
+ * the dummy of its parent bucket.
+ * <p>
+ * An entry is removed in three steps: its value is set to null, which is
+ * the moment it leaves the map; then its `next` pointer is marked, so no
+ * node is inserted after it; then it is unlinked.  Any thread that finds an
+ * entry part way through finishes the job.  Puts that replace a value CAS
+ * the value in place.
+ * <p>
+ * The key may be null, but values may not.  keySet, values and entrySet
+ * are live views whose iterators are weakly consistent, not a snapshot of
+ * a single moment.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class MyLockFreeHashMap<K, V> implements ConcurrentMap<K, V> {
+
+    // average number of entries per bucket before the number of buckets doubles
+    private static final int LOAD_FACTOR = 2;
+
+    // bucket numbers have at most 30 bits, so the reversed hash of a regular
+    // node always has its low bit free to tell it from a dummy node
+    private static final int MAX_BUCKETS = 1 << 30;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<MyLockFreeHashMap> BUCKET_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(MyLockFreeHashMap.class, "bucketCount");
+
+    /**
+     * A node of the list.  Dummy nodes have an even `order` and no key.
+     */
+    private static final class Node<K, V> {
+        final int order;         // bit-reversed hash, compared unsigned
+        final K key;
+        volatile Object value;   // null once the entry is removed
+        final AtomicMarkableReference<Node<K, V>> next;
+
+        Node(int order, K key, Object value, Node<K, V> next) {
+            this.order = order;
+            this.key = key;
+            this.value = value;
+            this.next = new AtomicMarkableReference<>(next, false);
+        }
+
+        boolean isDummy() {
+            return (order & 1) == 0;
+        }
+
+        boolean casValue(Object expected, Object update) {
+            return VALUE.compareAndSet(this, expected, update);
+        }
+    }
+
+    /**
+     * Where a search stopped: `curr` is the first node at or after the
+     * position of the key, and `pred` is the node before it.
+     */
+    private static final class Window<K, V> {
+        final Node<K, V> pred;
+        final Node<K, V> curr;
+        final boolean found;
+
+        Window(Node<K, V> pred, Node<K, V> curr, boolean found) {
+            this.pred = pred;
+            this.curr = curr;
+            this.found = found;
+        }
+    }
+
+    // bucket 0 is in segment 0; buckets [2^(s-1), 2^s) are in segment s
+    private final AtomicReferenceArray<AtomicReferenceArray<Node<K, V>>> segments =
+            new AtomicReferenceArray<>(31);
+
+    private final Node<K, V> head;
+    private volatile int bucketCount = 2;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     *
+     */
+    public MyLockFreeHashMap() {
+        head = new Node<>(0, null, null, null);
+        segments.set(0, new AtomicReferenceArray<Node<K, V>>(1));
+        segments.get(0).set(0, head);
+    }
+
+    /**
+     * Returns a 30-bit hash, with the high bits of the hash code mixed in.
+     */
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return (h ^ (h >>> 16)) & (MAX_BUCKETS - 1);
+    }
+
+    private static int regularOrder(int hash) {
+        return Integer.reverse(hash) | 1;
+    }
+
+    private static int dummyOrder(int bucket) {
+        return Integer.reverse(bucket);
+    }
+
+    /**
+     * Returns the dummy node of `bucket`, initializing it if necessary.
+     */
+    private Node<K, V> bucket(int bucket) {
+        int segment = bucket == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(bucket);
+        AtomicReferenceArray<Node<K, V>> nodes = segments.get(segment);
+        if (nodes == null) {
+            segments.compareAndSet(segment, null,
+                    new AtomicReferenceArray<Node<K, V>>(1 << (segment - 1)));
+            nodes = segments.get(segment);
+        }
+        int index = bucket == 0 ? 0 : bucket - Integer.highestOneBit(bucket);
+        Node<K, V> dummy = nodes.get(index);
+        if (dummy != null) {
+            return dummy;
+        }
+        // the parent is the bucket this one split from: the same bucket
+        // number without its highest bit
+        Node<K, V> parent = bucket(bucket - Integer.highestOneBit(bucket));
+        dummy = insertDummy(parent, dummyOrder(bucket));
+        nodes.compareAndSet(index, null, dummy);
+        return nodes.get(index);
+    }
+
+    /**
+     * Inserts a dummy node after `start`, or returns the one another
+     * thread inserted first.
+     */
+    private Node<K, V> insertDummy(Node<K, V> start, int order) {
+        while (true) {
+            Window<K, V> window = find(start, order, null, true);
+            if (window.found) {
+                return window.curr;
+            }
+            Node<K, V> dummy = new Node<>(order, null, null, window.curr);
+            if (window.pred.next.compareAndSet(window.curr, dummy, false, false)) {
+                return dummy;
+            }
+        }
+    }
+
+    /**
+     * Searches from `start` for the node with the given order and key,
+     * unlinking removed nodes on the way.
+     *
+     * @param dummy whether to look for a dummy node rather than an entry
+     */
+    private Window<K, V> find(Node<K, V> start, int order, Object key, boolean dummy) {
+        retry:
+        while (true) {
+            Node<K, V> pred = start;
+            Node<K, V> curr = pred.next.getReference();
+            while (curr != null) {
+                boolean[] marked = {false};
+                Node<K, V> succ = curr.next.get(marked);
+                if (marked[0]) {
+                    // curr is removed; unlink it, or start over if pred changed
+                    if (!pred.next.compareAndSet(curr, succ, false, false)) {
+                        continue retry;
+                    }
+                    curr = succ;
+                    continue;
+                }
+                if (!curr.isDummy() && curr.value == null) {
+                    // removed but not marked yet; mark it, then unlink it above
+                    curr.next.attemptMark(succ, true);
+                    continue;
+                }
+                int cmp = Integer.compareUnsigned(curr.order, order);
+                if (cmp > 0) {
+                    return new Window<>(pred, curr, false);
+                }
+                if (cmp == 0 && (dummy || Objects.equals(key, curr.key))) {
+                    return new Window<>(pred, curr, true);
+                }
+                pred = curr;
+                curr = succ;
+            }
+            return new Window<>(pred, null, false);
+        }
+    }
+
+    private Window<K, V> findEntry(Object key) {
+        int h = hash(key);
+        Node<K, V> start = bucket(h & (bucketCount - 1));
+        return find(start, regularOrder(h), key, false);
+    }
+
+    /**
+     * Returns the live node of `key`, searching without unlinking anything.
+     * It may pass through nodes that are being removed, which is harmless:
+     * their `next` pointers still lead to the rest of the list.
+     */
+    private Node<K, V> lookup(Object key) {
+        int h = hash(key);
+        int order = regularOrder(h);
+        Node<K, V> curr = bucket(h & (bucketCount - 1)).next.getReference();
+        while (curr != null) {
+            int cmp = Integer.compareUnsigned(curr.order, order);
+            if (cmp > 0) {
+                return null;
+            }
+            if (cmp == 0 && curr.value != null && Objects.equals(key, curr.key)) {
+                return curr;
+            }
+            curr = curr.next.getReference();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = lookup(key);
+        return node == null ? null : (V) node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value);
+        int h = hash(key);
+        int order = regularOrder(h);
+        while (true) {
+            Node<K, V> start = bucket(h & (bucketCount - 1));
+            Window<K, V> window = find(start, order, key, false);
+            if (window.found) {
+                Object old = window.curr.value;
+                if (old == null) {
+                    // being removed; the next search unlinks it
+                    continue;
+                }
+                if (onlyIfAbsent || window.curr.casValue(old, value)) {
+                    return (V) old;
+                }
+                continue;
+            }
+            Node<K, V> node = new Node<>(order, key, value, window.curr);
+            if (window.pred.next.compareAndSet(window.curr, node, false, false)) {
+                grow(size.incrementAndGet());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Doubles the number of buckets if there are too many entries per
+     * bucket.  The new buckets are initialized when they are first used.
+     */
+    private void grow(int newSize) {
+        int buckets = bucketCount;
+        if (newSize / buckets > LOAD_FACTOR && buckets < MAX_BUCKETS) {
+            // if another thread doubled it first, there is nothing to do
+            BUCKET_COUNT.compareAndSet(this, buckets, buckets * 2);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return remove(key, null, false);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value != null && remove(key, value, true) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V remove(Object key, Object expected, boolean onlyIfEqual) {
+        Node<K, V> node = lookup(key);
+        if (node == null) {
+            return null;
+        }
+        while (true) {
+            Object old = node.value;
+            if (old == null || (onlyIfEqual && !old.equals(expected))) {
+                return null;
+            }
+            if (node.casValue(old, null)) {
+                size.decrementAndGet();
+                // mark and unlink it
+                findEntry(key);
+                return (V) old;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        Node<K, V> node = lookup(key);
+        if (node == null) {
+            return false;
+        }
+        while (true) {
+            Object old = node.value;
+            if (old == null || !old.equals(oldValue)) {
+                return false;
+            }
+            if (node.casValue(old, newValue)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        Node<K, V> node = lookup(key);
+        if (node == null) {
+            return null;
+        }
+        while (true) {
+            Object old = node.value;
+            if (old == null || node.casValue(old, value)) {
+                return (V) old;
+            }
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes the entries one at a time, so entries added during the call
+     * may remain.
+     */
+    @Override
+    public void clear() {
+        for (K key : keySet()) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        for (V value : values()) {
+            if (value.equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a view of the keys, which reads through to the map.
+     */
+    @Override
+    public Set<K> keySet() {
+        return MapViews.keySet(this, EntryIterator::new);
+    }
+
+    /**
+     * Returns a view of the values, which reads through to the map.
+     */
+    @Override
+    public Collection<V> values() {
+        return MapViews.values(this, EntryIterator::new);
+    }
+
+    /**
+     * Returns a view of the entries, which reads through to the map.  The
+     * entries are immutable; use `put` to change a value.
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return MapViews.entrySet(this, EntryIterator::new);
+    }
+
+    /**
+     * Walks the list from the head, skipping dummy nodes and removed
+     * entries.  A node that is unlinked while the iterator is on it still
+     * points forward, so the walk always reaches the end.  Its remove method
+     * removes the entry it returned, unless its value has changed since.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private Node<K, V> node = head;
+        private Map.Entry<K, V> next;    // found by hasNext, or null
+        private Map.Entry<K, V> last;    // returned by next, or null
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                node = node.next.getReference();
+                if (node == null) {
+                    return false;
+                }
+                Object value = node.value;
+                if (!node.isDummy() && value != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<>(node.key, (V) value);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = null;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            MyLockFreeHashMap.this.remove(last.getKey(), last.getValue());
+            last = null;
+        }
+    }
+
+    /**
+     * Returns the number of buckets, for testing.
+     *
+     * @return
+     */
+    int bucketCount() {
+        return bucketCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MyLockFreeHashMap(size=" + size() + ", buckets=" + bucketCount + ")";
+    }
+}
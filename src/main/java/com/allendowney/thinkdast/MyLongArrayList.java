@@ -0,0 +1,176 @@
+package com.allendowney.thinkdast;
+
+import java.util.Arrays;
+
+/**
+ * A list of primitive longs that grows like MyArrayList, but stores the
+ * elements in a long[] so that no element is ever boxed.
+ * <p>
+ * Removing by index is `remove` and removing by value is `removeValue`,
+ * the same names used by MyIntArrayList.
+ */
+public class MyLongArrayList {
+    private int size;            // keeps track of the number of elements
+    private long[] array;        // stores the elements
+
+    /**
+     *
+     */
+    public MyLongArrayList() {
+        array = new long[10];
+        size = 0;
+    }
+
+    /**
+     * Appends an element, doubling the array if it is full.
+     *
+     * @param element
+     * @return true
+     */
+    public boolean add(long element) {
+        if (size >= array.length) {
+            grow();
+        }
+        array[size] = element;
+        size++;
+        return true;
+    }
+
+    /**
+     * Inserts an element at the given index, shifting the rest to the right.
+     *
+     * @param index
+     * @param element
+     */
+    public void add(int index, long element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (size >= array.length) {
+            grow();
+        }
+        System.arraycopy(array, index, array, index + 1, size - index);
+        array[index] = element;
+        size++;
+    }
+
+    /**
+     * Makes a bigger array and copies over the elements.
+     */
+    private void grow() {
+        array = Arrays.copyOf(array, array.length * 2);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(long element) {
+        return indexOf(element) != -1;
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return array[index];
+    }
+
+    public int indexOf(long target) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int lastIndexOf(long target) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (array[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the element at the given index.
+     *
+     * @param index
+     * @return the element that was removed
+     */
+    public long remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        long old = array[index];
+        System.arraycopy(array, index + 1, array, index, size - index - 1);
+        size--;
+        return old;
+    }
+
+    /**
+     * Removes the first occurrence of the given value.
+     *
+     * @param element
+     * @return true if the list contained the value
+     */
+    public boolean removeValue(long element) {
+        int index = indexOf(element);
+        if (index == -1) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    public long set(int index, long element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        long old = array[index];
+        array[index] = element;
+        return old;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the elements into ascending numerical order.
+     */
+    public void sort() {
+        Arrays.sort(array, 0, size);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(array, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        // run a few simple tests
+        MyLongArrayList mlal = new MyLongArrayList();
+        mlal.add(3L);
+        mlal.add(1L);
+        mlal.add(2L);
+        System.out.println(mlal + " size = " + mlal.size());
+
+        mlal.sort();
+        mlal.removeValue(2L);
+        System.out.println(mlal + " size = " + mlal.size());
+    }
+}
@@ -0,0 +1,498 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Immutable vector that shares structure between versions, in the style of
+ * Clojure's PersistentVector.
+ * <p>
+ * The elements are stored in a trie with 32 children per node, plus a tail
+ * array that holds the last 1 to 32 elements.  `plus`, `with` and `pop` return
+ * a new vector and leave this one unchanged; they copy only the path from the
+ * root to the changed leaf, which is O(log32 n), and share everything else.
+ * So taking a snapshot is free: the vector itself is the snapshot, and it can
+ * be handed to other threads without copying or locking.
+ * <p>
+ * To build a large vector quickly, use a {@link Builder}, which mutates the
+ * nodes it has already copied instead of copying them again on every add.
+ *
+ * @param <E>
+ */
+public class MyPersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * A node in the trie.  Interior nodes hold Nodes; leaves hold elements.
+     * <p>
+     * `edit` identifies the Builder that is allowed to mutate the node,
+     * if any.
+     */
+    private static class Node {
+        public final Object edit;
+        public final Object[] array;
+
+        public Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+    }
+
+    private static final Node EMPTY_NODE = new Node(null, new Object[WIDTH]);
+    private static final MyPersistentVector<?> EMPTY =
+            new MyPersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    private final int shift;     // BITS times the number of levels above the leaves
+    private final Node root;
+    private final Object[] tail;
+
+    private MyPersistentVector(int size, int shift, Node root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the empty vector.
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> MyPersistentVector<E> empty() {
+        return (MyPersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a new, empty Builder.
+     *
+     * @return
+     */
+    public static <E> Builder<E> builder() {
+        return new Builder<>(MyPersistentVector.<E>empty());
+    }
+
+    /**
+     * Returns a Builder that starts with the elements of this vector.
+     * <p>
+     * This vector is not affected by changes to the Builder.
+     *
+     * @return
+     */
+    public Builder<E> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the first element in the tail.
+     */
+    private static int tailOffset(int size) {
+        return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Returns the leaf array that contains the element at index `i`.
+     */
+    private Object[] arrayFor(int i) {
+        if (i >= tailOffset(size)) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Node) node.array[(i >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns a new vector with `element` added at the end.
+     *
+     * @param element
+     * @return
+     */
+    public MyPersistentVector<E> plus(E element) {
+        if (size - tailOffset(size) < WIDTH) {
+            // room in the tail
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new MyPersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // the tail is full, so push it into the tree and start a new one
+        Node tailNode = new Node(null, tail);
+        Node newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // the tree is full, so add a level
+            newRoot = new Node(null, new Object[WIDTH]);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(null, size, shift, root, tailNode);
+        }
+        return new MyPersistentVector<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * Copies the path to the last leaf and attaches `tailNode` there.
+     * <p>
+     * Nodes that already belong to `edit` are changed in place.
+     *
+     * @param edit     the Builder doing the update, or null
+     * @param size     the size of the vector before the push
+     * @param level
+     * @param parent
+     * @param tailNode
+     * @return
+     */
+    private static Node pushTail(Object edit, int size, int level, Node parent, Node tailNode) {
+        Node node = editable(edit, parent);
+        int subidx = ((size - 1) >>> level) & MASK;
+        Node toInsert;
+        if (level == BITS) {
+            toInsert = tailNode;
+        } else {
+            Node child = (Node) parent.array[subidx];
+            toInsert = (child == null)
+                    ? newPath(edit, level - BITS, tailNode)
+                    : pushTail(edit, size, level - BITS, child, tailNode);
+        }
+        node.array[subidx] = toInsert;
+        return node;
+    }
+
+    /**
+     * Makes a chain of nodes down to `level` 0 that ends at `node`.
+     */
+    private static Node newPath(Object edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node ret = new Node(edit, new Object[WIDTH]);
+        ret.array[0] = newPath(edit, level - BITS, node);
+        return ret;
+    }
+
+    /**
+     * Returns `node` if it belongs to `edit`, otherwise a copy that does.
+     */
+    private static Node editable(Object edit, Node node) {
+        if (edit != null && node.edit == edit) {
+            return node;
+        }
+        return new Node(edit, node.array.clone());
+    }
+
+    /**
+     * Returns a new vector with the element at `index` replaced.
+     *
+     * @param index
+     * @param element
+     * @return
+     */
+    public MyPersistentVector<E> with(int index, E element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new MyPersistentVector<>(size, shift, root, newTail);
+        }
+        return new MyPersistentVector<>(size, shift, assoc(null, shift, root, index, element), tail);
+    }
+
+    /**
+     * Copies the path to the leaf that holds `index` and replaces the element.
+     */
+    private static Node assoc(Object edit, int level, Node parent, int index, Object element) {
+        Node node = editable(edit, parent);
+        if (level == 0) {
+            node.array[index & MASK] = element;
+        } else {
+            int subidx = (index >>> level) & MASK;
+            node.array[subidx] = assoc(edit, level - BITS, (Node) parent.array[subidx], index, element);
+        }
+        return node;
+    }
+
+    /**
+     * Returns a new vector without the last element.
+     *
+     * @return
+     */
+    public MyPersistentVector<E> pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Can't pop an empty vector");
+        }
+        if (size == 1) {
+            return empty();
+        }
+        if (size - tailOffset(size) > 1) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length - 1);
+            return new MyPersistentVector<>(size - 1, shift, root, newTail);
+        }
+        // the tail becomes empty, so the last leaf becomes the new tail
+        Object[] newTail = arrayFor(size - 2);
+        Node newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot.array[1] == null) {
+            // the root has only one child, so remove a level
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new MyPersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Copies the path to the last leaf, leaving the leaf out.
+     *
+     * @return the new node, or null if it would be empty
+     */
+    private Node popTail(int level, Node node) {
+        int subidx = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node newChild = popTail(level - BITS, (Node) node.array[subidx]);
+            if (newChild == null && subidx == 0) {
+                return null;
+            }
+            Node ret = new Node(null, node.array.clone());
+            ret.array[subidx] = newChild;
+            return ret;
+        } else if (subidx == 0) {
+            return null;
+        } else {
+            Node ret = new Node(null, node.array.clone());
+            ret.array[subidx] = null;
+            return ret;
+        }
+    }
+
+    /**
+     * Iterates one leaf array at a time rather than searching for each element.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int i = 0;
+            private Object[] array = (size == 0) ? tail : arrayFor(0);
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public E next() {
+                if (i >= size) {
+                    throw new NoSuchElementException();
+                }
+                if (i > 0 && (i & MASK) == 0) {
+                    array = arrayFor(i);
+                }
+                return (E) array[i++ & MASK];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Builds a vector by mutating nodes in place.
+     * <p>
+     * The Builder copies a node the first time it changes it and marks the
+     * copy as its own; later changes to that node happen in place.  Once
+     * `build` is called, the Builder can't be used again, so the vector it
+     * returns is immutable.
+     * <p>
+     * A Builder is not thread safe.
+     *
+     * @param <E>
+     */
+    public static class Builder<E> {
+        private Object edit = new Object();
+        private int size;
+        private int shift;
+        private Node root;
+        private Object[] tail;   // always WIDTH long
+
+        private Builder(MyPersistentVector<E> vector) {
+            size = vector.size;
+            shift = vector.shift;
+            root = editable(edit, vector.root);
+            tail = Arrays.copyOf(vector.tail, WIDTH);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            ensureEditable();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (index >= tailOffset(size)) {
+                return (E) tail[index & MASK];
+            }
+            Node node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                node = (Node) node.array[(index >>> level) & MASK];
+            }
+            return (E) node.array[index & MASK];
+        }
+
+        /**
+         * Adds an element at the end.
+         *
+         * @param element
+         * @return this Builder
+         */
+        public Builder<E> add(E element) {
+            ensureEditable();
+            if (size - tailOffset(size) < WIDTH) {
+                tail[size & MASK] = element;
+                size++;
+                return this;
+            }
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[WIDTH];
+            tail[0] = element;
+            if ((size >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(edit, new Object[WIDTH]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(edit, size, shift, root, tailNode);
+            }
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds all of the elements.
+         *
+         * @param elements
+         * @return this Builder
+         */
+        public Builder<E> addAll(Iterable<? extends E> elements) {
+            for (E element : elements) {
+                add(element);
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the element at `index`.
+         *
+         * @param index
+         * @param element
+         * @return this Builder
+         */
+        public Builder<E> set(int index, E element) {
+            ensureEditable();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (index >= tailOffset(size)) {
+                tail[index & MASK] = element;
+            } else {
+                root = assoc(edit, shift, root, index, element);
+            }
+            return this;
+        }
+
+        /**
+         * Returns the vector and ends this Builder.
+         *
+         * @return
+         */
+        public MyPersistentVector<E> build() {
+            ensureEditable();
+            edit = null;
+            if (size == 0) {
+                return empty();
+            }
+            Object[] trimmed = Arrays.copyOf(tail, size - tailOffset(size));
+            return new MyPersistentVector<>(size, shift, root, trimmed);
+        }
+
+        private void ensureEditable() {
+            if (edit == null) {
+                throw new IllegalStateException("build() has already been called");
+            }
+        }
+    }
+
+    /**
+     * Compares the cost of a snapshot followed by one append for
+     * MyPersistentVector and for copying a MyArrayList, as the size grows.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int reps = 1000;
+        for (int n = 1000; n <= 1000000; n *= 10) {
+            Builder<Integer> builder = builder();
+            MyArrayList<Integer> list = new MyArrayList<>();
+            for (int i = 0; i < n; i++) {
+                builder.add(i);
+                list.add(i);
+            }
+            MyPersistentVector<Integer> vector = builder.build();
+
+            long start = System.nanoTime();
+            for (int rep = 0; rep < reps; rep++) {
+                MyPersistentVector<Integer> snapshot = vector;
+                vector = vector.plus(rep).pop();
+                if (snapshot.size() != n) {
+                    throw new AssertionError();
+                }
+            }
+            long persistent = (System.nanoTime() - start) / reps;
+
+            start = System.nanoTime();
+            for (int rep = 0; rep < reps / 100; rep++) {
+                MyArrayList<Integer> snapshot = new MyArrayList<>();
+                snapshot.addAll(list);
+                list.add(rep);
+                list.remove(list.size() - 1);
+            }
+            long copied = (System.nanoTime() - start) / (reps / 100);
+
+            System.out.println("n = " + n + ": persistent snapshot " + persistent
+                    + " ns, MyArrayList copy " + copied + " ns");
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.allendowney.thinkdast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A list of fixed-width records, such as (docId, count) or (termId, position)
+ * tuples, stored outside the Java heap.
+ * <p>
+ * Every record has the same number of int fields.  Records are packed into
+ * chunks of direct ByteBuffers, or of a memory-mapped file, so a list of
+ * hundreds of millions of records is a few hundred buffers as far as the
+ * garbage collector is concerned, not hundreds of millions of objects.
+ * <p>
+ * The primitive accessors (`getInt`, `setInt`, `sortByField` and `cursor`)
+ * never allocate.  `asList` offers a List view for compatibility, but it
+ * allocates an array for every record it returns.
+ */
+public class MyRecordList implements Closeable {
+
+    private final int fieldCount;
+    private final int recordBytes;
+    private final int chunkShift;     // log2 of the number of records per chunk
+    private final int chunkMask;
+    private final FileChannel channel; // backing file, or null for direct buffers
+
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int numChunks;
+    private int size;
+
+    /**
+     * Makes a list backed by direct buffers of 65536 records each.
+     *
+     * @param fieldCount number of int fields in each record
+     */
+    public MyRecordList(int fieldCount) {
+        this(fieldCount, 1 << 16);
+    }
+
+    /**
+     * Makes a list backed by direct buffers.
+     *
+     * @param fieldCount      number of int fields in each record
+     * @param recordsPerChunk must be a power of two
+     */
+    public MyRecordList(int fieldCount, int recordsPerChunk) {
+        this(fieldCount, recordsPerChunk, null);
+    }
+
+    private MyRecordList(int fieldCount, int recordsPerChunk, FileChannel channel) {
+        if (fieldCount < 1) {
+            throw new IllegalArgumentException("fieldCount must be positive");
+        }
+        if (recordsPerChunk < 1 || Integer.bitCount(recordsPerChunk) != 1) {
+            throw new IllegalArgumentException("recordsPerChunk must be a power of two");
+        }
+        if ((long) recordsPerChunk * fieldCount * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("chunks must be smaller than 2GB");
+        }
+        this.fieldCount = fieldCount;
+        this.recordBytes = fieldCount * 4;
+        this.chunkShift = Integer.numberOfTrailingZeros(recordsPerChunk);
+        this.chunkMask = recordsPerChunk - 1;
+        this.channel = channel;
+    }
+
+    /**
+     * Makes a list backed by a memory-mapped file, which is created if it
+     * does not exist.  The file grows one chunk at a time.
+     *
+     * @param path
+     * @param fieldCount      number of int fields in each record
+     * @param recordsPerChunk must be a power of two
+     * @return
+     * @throws IOException
+     */
+    public static MyRecordList mapped(Path path, int fieldCount, int recordsPerChunk) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MyRecordList(fieldCount, recordsPerChunk, channel);
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all records.  The buffers are kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a record with every field set to 0.
+     *
+     * @return the index of the new record
+     */
+    public int add() {
+        int record = size;
+        if ((record >>> chunkShift) == numChunks) {
+            addChunk();
+        }
+        size++;
+        ByteBuffer chunk = chunks[record >>> chunkShift];
+        int offset = (record & chunkMask) * recordBytes;
+        for (int i = 0; i < fieldCount; i++) {
+            chunk.putInt(offset + i * 4, 0);
+        }
+        return record;
+    }
+
+    /**
+     * Appends a record with two fields.
+     *
+     * @param field0
+     * @param field1
+     * @return the index of the new record
+     */
+    public int add(int field0, int field1) {
+        if (fieldCount != 2) {
+            throw new IllegalStateException("records have " + fieldCount + " fields");
+        }
+        int record = add();
+        setInt(record, 0, field0);
+        setInt(record, 1, field1);
+        return record;
+    }
+
+    private void addChunk() {
+        if (numChunks == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        long chunkBytes = (long) recordBytes << chunkShift;
+        ByteBuffer chunk;
+        if (channel == null) {
+            chunk = ByteBuffer.allocateDirect((int) chunkBytes);
+        } else {
+            try {
+                chunk = channel.map(FileChannel.MapMode.READ_WRITE, numChunks * chunkBytes, chunkBytes);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't map chunk " + numChunks, e);
+            }
+        }
+        chunks[numChunks++] = chunk.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns a field of a record.
+     *
+     * @param record
+     * @param field
+     * @return
+     */
+    public int getInt(int record, int field) {
+        checkIndex(record, field);
+        return chunks[record >>> chunkShift].getInt((record & chunkMask) * recordBytes + field * 4);
+    }
+
+    /**
+     * Sets a field of a record.
+     *
+     * @param record
+     * @param field
+     * @param value
+     */
+    public void setInt(int record, int field, int value) {
+        checkIndex(record, field);
+        chunks[record >>> chunkShift].putInt((record & chunkMask) * recordBytes + field * 4, value);
+    }
+
+    private void checkIndex(int record, int field) {
+        if (record < 0 || record >= size || field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Swaps two records, field by field.
+     */
+    private void swap(int i, int j) {
+        ByteBuffer a = chunks[i >>> chunkShift];
+        ByteBuffer b = chunks[j >>> chunkShift];
+        int offsetA = (i & chunkMask) * recordBytes;
+        int offsetB = (j & chunkMask) * recordBytes;
+        for (int k = 0; k < recordBytes; k += 4) {
+            int tmp = a.getInt(offsetA + k);
+            a.putInt(offsetA + k, b.getInt(offsetB + k));
+            b.putInt(offsetB + k, tmp);
+        }
+    }
+
+    private int key(int record, int field) {
+        return chunks[record >>> chunkShift].getInt((record & chunkMask) * recordBytes + field * 4);
+    }
+
+    /**
+     * Sorts the records in place by one field, in ascending order.
+     * <p>
+     * Uses quicksort with a median-of-three pivot, so it is not stable.
+     * It recurses on the smaller part only, so the stack depth is O(log n).
+     *
+     * @param field
+     */
+    public void sortByField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        quicksort(field, 0, size - 1);
+    }
+
+    private void quicksort(int field, int lo, int hi) {
+        while (hi - lo > 16) {
+            int p = partition(field, lo, hi);
+            if (p - lo < hi - p) {
+                quicksort(field, lo, p - 1);
+                lo = p + 1;
+            } else {
+                quicksort(field, p + 1, hi);
+                hi = p - 1;
+            }
+        }
+        insertionSort(field, lo, hi);
+    }
+
+    /**
+     * Partitions [lo, hi] around a median-of-three pivot.
+     *
+     * @return the final index of the pivot
+     */
+    private int partition(int field, int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        if (key(mid, field) < key(lo, field)) {
+            swap(mid, lo);
+        }
+        if (key(hi, field) < key(lo, field)) {
+            swap(hi, lo);
+        }
+        if (key(hi, field) < key(mid, field)) {
+            swap(hi, mid);
+        }
+        // now lo <= mid <= hi; park the pivot at hi - 1
+        swap(mid, hi - 1);
+        int pivot = key(hi - 1, field);
+        int i = lo;
+        int j = hi - 1;
+        while (true) {
+            while (key(++i, field) < pivot) {
+            }
+            while (key(--j, field) > pivot) {
+            }
+            if (i >= j) {
+                break;
+            }
+            swap(i, j);
+        }
+        swap(i, hi - 1);
+        return i;
+    }
+
+    private void insertionSort(int field, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && key(j, field) < key(j - 1, field); j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Returns a Cursor positioned before the first record.
+     *
+     * @return
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Moves through the records in order without allocating.
+     * <p>
+     * Typical use:
+     * <pre>
+     * MyRecordList.Cursor cursor = list.cursor();
+     * while (cursor.next()) {
+     *     total += cursor.getInt(1);
+     * }
+     * </pre>
+     */
+    public class Cursor {
+        private int record = -1;
+        private ByteBuffer chunk;
+        private int offset;
+
+        /**
+         * Advances to the next record.
+         *
+         * @return false if there are no more records
+         */
+        public boolean next() {
+            if (record + 1 >= size) {
+                return false;
+            }
+            record++;
+            chunk = chunks[record >>> chunkShift];
+            offset = (record & chunkMask) * recordBytes;
+            return true;
+        }
+
+        /**
+         * Returns the index of the current record.
+         */
+        public int index() {
+            return record;
+        }
+
+        public int getInt(int field) {
+            if (field < 0 || field >= fieldCount) {
+                throw new IndexOutOfBoundsException();
+            }
+            return chunk.getInt(offset + field * 4);
+        }
+
+        public void setInt(int field, int value) {
+            if (field < 0 || field >= fieldCount) {
+                throw new IndexOutOfBoundsException();
+            }
+            chunk.putInt(offset + field * 4, value);
+        }
+    }
+
+    /**
+     * Returns a List view in which each record is an int[] of its fields.
+     * <p>
+     * The view reads and writes through to this list, but `get` allocates
+     * a new array every time.
+     *
+     * @return
+     */
+    public List<int[]> asList() {
+        return new AbstractList<int[]>() {
+            @Override
+            public int[] get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException();
+                }
+                int[] fields = new int[fieldCount];
+                for (int i = 0; i < fieldCount; i++) {
+                    fields[i] = getInt(index, i);
+                }
+                return fields;
+            }
+
+            @Override
+            public int[] set(int index, int[] fields) {
+                int[] old = get(index);
+                for (int i = 0; i < fieldCount; i++) {
+                    setInt(index, i, fields[i]);
+                }
+                return old;
+            }
+
+            @Override
+            public boolean add(int[] fields) {
+                int record = MyRecordList.this.add();
+                for (int i = 0; i < fieldCount; i++) {
+                    setInt(record, i, fields[i]);
+                }
+                return true;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Closes the backing file, if there is one.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MyRecordList(fields=" + fieldCount + ", size=" + size + ")";
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        // (docId, count) pairs
+        MyRecordList postings = new MyRecordList(2);
+        postings.add(7, 3);
+        postings.add(2, 9);
+        postings.add(5, 1);
+        postings.sortByField(1);
+
+        MyRecordList.Cursor cursor = postings.cursor();
+        while (cursor.next()) {
+            System.out.println(cursor.getInt(0) + ", " + cursor.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Implementation of a List using a tiered vector: an array of fixed-size
+ * blocks, each of which is a circular buffer.
+ * <p>
+ * Every block but the last is full, so the block and offset of an element
+ * can be computed from its index, and get and set take constant time.
+ * Adding or removing in the middle shifts elements within one block, then
+ * passes one element across each later block, which takes constant time per
+ * block because the blocks are circular.  The block size is kept near the
+ * square root of the size, so both parts cost O(sqrt(n)).
+ *
+ * @param <E>
+ */
+public class MyTieredList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int MIN_SHIFT = 3;
+
+    /**
+     * A circular buffer holding up to `mask + 1` elements.
+     */
+    private static class Block {
+        public final Object[] items;
+        public final int mask;
+        public int start;        // index in items of the first element
+        public int count;
+
+        public Block(int capacity) {
+            items = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        public Object get(int index) {
+            return items[(start + index) & mask];
+        }
+
+        public Object set(int index, Object element) {
+            int i = (start + index) & mask;
+            Object old = items[i];
+            items[i] = element;
+            return old;
+        }
+
+        public void addFirst(Object element) {
+            start = (start - 1) & mask;
+            items[start] = element;
+            count++;
+        }
+
+        public void addLast(Object element) {
+            items[(start + count) & mask] = element;
+            count++;
+        }
+
+        public Object removeFirst() {
+            Object old = items[start];
+            items[start] = null;
+            start = (start + 1) & mask;
+            count--;
+            return old;
+        }
+
+        public Object removeLast() {
+            count--;
+            int i = (start + count) & mask;
+            Object old = items[i];
+            items[i] = null;
+            return old;
+        }
+
+        /**
+         * Inserts an element, shifting whichever side of `index` is shorter.
+         * The block must not be full.
+         */
+        public void insert(int index, Object element) {
+            if (index < count / 2) {
+                start = (start - 1) & mask;
+                for (int k = 0; k < index; k++) {
+                    items[(start + k) & mask] = items[(start + k + 1) & mask];
+                }
+            } else {
+                for (int k = count; k > index; k--) {
+                    items[(start + k) & mask] = items[(start + k - 1) & mask];
+                }
+            }
+            items[(start + index) & mask] = element;
+            count++;
+        }
+
+        /**
+         * Removes an element, shifting whichever side of `index` is shorter.
+         */
+        public Object remove(int index) {
+            Object old = get(index);
+            if (index < count / 2) {
+                for (int k = index; k > 0; k--) {
+                    items[(start + k) & mask] = items[(start + k - 1) & mask];
+                }
+                items[start] = null;
+                start = (start + 1) & mask;
+            } else {
+                for (int k = index; k < count - 1; k++) {
+                    items[(start + k) & mask] = items[(start + k + 1) & mask];
+                }
+                items[(start + count - 1) & mask] = null;
+            }
+            count--;
+            return old;
+        }
+    }
+
+    private int shift;           // log2 of the block size
+    private Block[] blocks;      // the first `numBlocks` are in use
+    private int numBlocks;
+    private int size;            // keeps track of the number of elements
+
+    /**
+     *
+     */
+    public MyTieredList() {
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        shift = MIN_SHIFT;
+        blocks = new Block[2];
+        numBlocks = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (E) blocks[index >>> shift].get(index & (blockSize() - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E set(int index, E element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (E) blocks[index >>> shift].set(index & (blockSize() - 1), element);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(E element) {
+        lastBlockWithRoom().addLast(element);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (index == size) {
+            add(element);
+            return;
+        }
+        lastBlockWithRoom();
+        int b = index >>> shift;
+
+        // the target block is full unless it is the last one, so make room
+        // by passing its last element to the front of the next block, and so on
+        Object carry = element;
+        int offset = index & (blockSize() - 1);
+        for (; b < numBlocks - 1; b++) {
+            Block block = blocks[b];
+            Object last = block.removeLast();
+            block.insert(offset, carry);
+            carry = last;
+            offset = 0;
+        }
+        blocks[b].insert(offset, carry);
+        size++;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        int b = index >>> shift;
+        E old = (E) blocks[b].remove(index & (blockSize() - 1));
+
+        // refill each block from the front of the next one
+        for (; b < numBlocks - 1; b++) {
+            blocks[b].addLast(blocks[b + 1].removeFirst());
+        }
+        size--;
+        modCount++;
+        if (blocks[numBlocks - 1].count == 0) {
+            blocks[--numBlocks] = null;
+        }
+        if (shift > MIN_SHIFT && size < (1 << (2 * shift - 3))) {
+            // fewer than an eighth as many blocks as the block size, so use smaller blocks
+            rebuild(shift - 1);
+        }
+        return old;
+    }
+
+    private int blockSize() {
+        return 1 << shift;
+    }
+
+    /**
+     * Returns the last block, first adding a new one if the last is full.
+     * <p>
+     * When the number of blocks reaches twice the block size, the blocks are
+     * rebuilt at twice the size, which keeps the block size near sqrt(n).
+     */
+    private Block lastBlockWithRoom() {
+        if (numBlocks > 0 && blocks[numBlocks - 1].count < blockSize()) {
+            return blocks[numBlocks - 1];
+        }
+        if (numBlocks >= 2 * blockSize()) {
+            rebuild(shift + 1);
+            if (blocks[numBlocks - 1].count < blockSize()) {
+                return blocks[numBlocks - 1];
+            }
+        }
+        if (numBlocks == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        Block block = new Block(blockSize());
+        blocks[numBlocks++] = block;
+        return block;
+    }
+
+    /**
+     * Copies the elements into blocks of size 2^newShift.
+     *
+     * @param newShift
+     */
+    private void rebuild(int newShift) {
+        Object[] elements = toArray();
+        shift = newShift;
+        int blockSize = blockSize();
+        numBlocks = (elements.length + blockSize - 1) / blockSize;
+        blocks = new Block[Math.max(2, numBlocks)];
+        for (int b = 0; b < numBlocks; b++) {
+            Block block = new Block(blockSize);
+            block.count = Math.min(blockSize, elements.length - b * blockSize);
+            System.arraycopy(elements, b * blockSize, block.items, 0, block.count);
+            blocks[b] = block;
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int i = 0;
+        for (int b = 0; b < numBlocks; b++) {
+            Block block = blocks[b];
+            // copy the circular buffer in at most two pieces
+            int n = Math.min(block.count, block.items.length - block.start);
+            System.arraycopy(block.items, block.start, array, i, n);
+            System.arraycopy(block.items, 0, array, i + n, block.count - n);
+            i += block.count;
+        }
+        return array;
+    }
+
+    /**
+     * Times middle inserts and removes against MyArrayList.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = 200000;
+        List<List<Integer>> lists = Arrays.<List<Integer>>asList(
+                new MyArrayList<Integer>(), new MyUnrolledList<Integer>(), new MyTieredList<Integer>());
+        for (List<Integer> list : lists) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                list.add(list.size() / 2, i);
+            }
+            long insert = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                total += list.get(i);
+            }
+            long get = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            while (!list.isEmpty()) {
+                list.remove(list.size() / 2);
+            }
+            long remove = System.nanoTime() - start;
+
+            System.out.println(list.getClass().getSimpleName()
+                    + ": middle insert " + insert / 1000000 + " ms"
+                    + ", get " + get / 1000000 + " ms"
+                    + ", middle remove " + remove / 1000000 + " ms"
+                    + " (" + total + ")");
+        }
+    }
+}
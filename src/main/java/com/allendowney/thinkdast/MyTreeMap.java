@@ -1,32 +1,95 @@
 package com.allendowney.thinkdast;
 
+import java.lang.reflect.Array;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Deque;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
- * Implementation of a Map using a binary search tree.
+ * Implementation of a NavigableMap using a binary search tree.
+ * <p>
+ * By default the tree is not balanced, so inserting keys in order makes it
+ * a linked list.  A balanced MyTreeMap is an AVL tree: after each insert or
+ * remove it rotates nodes on the path back to the root until every node's
+ * subtrees differ in height by at most one, which keeps the height below
+ * 1.44 log2(n + 2).
+ * <p>
+ * The views returned by subMap, headMap, tailMap and descendingMap read
+ * through to the map.  Their iterators, and those of the key, value and
+ * entry views, hold one stack of at most h nodes, so a scan of k keys in a
+ * range takes O(h + k) time and O(h) memory for a tree of height h.
+ * Entries returned by methods like floorEntry are snapshots; those from
+ * the iterators are the nodes themselves, so setValue writes through.
+ * <p>
+ * Each node also stores the number of nodes in its subtree, in both modes,
+ * so select, rank, countInRange and the size of a range view take O(h)
+ * time instead of O(n).
  *
  * @param <K>
  * @param <V>
  */
-public class MyTreeMap<K, V> implements Map<K, V> {
+public class MyTreeMap<K, V> implements NavigableMap<K, V> {
 
+    private final boolean balanced;
     private int size = 0;
     private Node root = null;
+    private int modCount = 0;    // counts structural changes, for the iterators
+
+    // the nodes from the root to the insertion point, reused by put
+    private Node[] path;
+
+    /**
+     * Makes an unbalanced tree.
+     */
+    public MyTreeMap() {
+        this(false);
+    }
+
+    /**
+     * @param balanced whether to keep the tree balanced
+     */
+    @SuppressWarnings("unchecked")
+    public MyTreeMap(boolean balanced) {
+        this.balanced = balanced;
+        this.path = (Node[]) Array.newInstance(Node.class, 16);
+    }
+
+    /**
+     * Returns whether the tree is kept balanced.
+     *
+     * @return
+     */
+    public boolean isBalanced() {
+        return balanced;
+    }
 
     /**
      * Represents a node in the tree.
      */
-    protected class Node {
+    protected class Node implements Map.Entry<K, V> {
         public K key;
         public V value;
         public Node left;
         public Node right;
+        int height = 1;    // of the subtree rooted here; kept up to date if balanced
+        int count = 1;     // of the nodes in the subtree rooted here
 
         /**
          * @param key   키
@@ -37,6 +100,37 @@ public class MyTreeMap<K, V> implements Map<K, V> {
             this.value = value;
         }
 
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            V old = value;
+            value = newValue;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> that = (Map.Entry<?, ?>) obj;
+            return Objects.equals(key, that.getKey()) && Objects.equals(value, that.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
         @Override
         public String toString() {
             return "Node (" +
@@ -51,6 +145,7 @@ public class MyTreeMap<K, V> implements Map<K, V> {
     public void clear() {
         size = 0;
         root = null;
+        modCount++;
     }
 
     @Override
@@ -90,6 +185,18 @@ public class MyTreeMap<K, V> implements Map<K, V> {
         return null;
     }
 
+    /**
+     * Compares a key with the key of a node.
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(Object key, K nodeKey) {
+        // some implementations can handle null as a key, but not this one
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        return ((Comparable<? super K>) key).compareTo(nodeKey);
+    }
+
     /**
      * Compares two keys or two values, handling null correctly.
      *
@@ -106,19 +213,22 @@ public class MyTreeMap<K, V> implements Map<K, V> {
 
     @Override
     public boolean containsValue(Object target) {
-        return containsValueHelper(root, target);
-    }
-
-    private boolean containsValueHelper(Node node, Object target) {
-        if (node == null) return false;
-        return equals(target, node.value)
-                || containsValueHelper(node.left, target)
-                || containsValueHelper(node.right, target);
+        // iterate rather than recurse, so a deep tree can't overflow the stack
+        for (V value : values()) {
+            if (equals(target, value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * Returns a view of the entries in key order, which reads through to
+     * the map.
+     */
     @Override
     public Set<Entry<K, V>> entrySet() {
-        throw new UnsupportedOperationException();
+        return MapViews.entrySet(this, () -> new TreeIterator(null, false));
     }
 
     @Override
@@ -135,19 +245,22 @@ public class MyTreeMap<K, V> implements Map<K, V> {
         return size == 0;
     }
 
+    /**
+     * Returns a view of the keys in order, which reads through to the map.
+     */
     @Override
     public Set<K> keySet() {
-        Set<K> set = new LinkedHashSet<>();
-        keySetHelper(set, root);
-        return set;
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
     }
 
-    // // In-Order Traversal
-    private void keySetHelper(Set<K> set, Node node) {
-        if (node == null) return;
-        keySetHelper(set, node.left);
-        set.add(node.key);
-        keySetHelper(set, node.right);
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
     }
 
     /**
@@ -163,43 +276,148 @@ public class MyTreeMap<K, V> implements Map<K, V> {
         if (root == null) {
             root = makeNode(key, value);
             size++;
+            modCount++;
             return null;
         }
-        return putHelper(root, key, value);
+
+        @SuppressWarnings("unchecked")
+        Comparable<? super K> k = (Comparable<? super K>) key;
+
+        // walk down to the key, or to where it belongs, remembering the path
+        int depth = 0;
+        Node node = root;
+        while (true) {
+            int compare = k.compareTo(node.key);
+            if (compare == 0) {
+                // If key is already in the tree, it replaces the old value with the new, and returns the old value.
+                V oldValue = node.value;
+                node.value = value;
+                Arrays.fill(path, 0, depth, null);
+                return oldValue;
+            }
+            depth = pushPath(depth, node);
+            Node child = compare < 0 ? node.left : node.right;
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+
+        // If key is not in the tree, it creates a new node, adds it below the last node on the path, and returns null.
+        Node newNode = makeNode(key, value);
+        if (k.compareTo(node.key) < 0) { // 현재 노드보다 작다.
+            node.left = newNode;
+        } else { // 현재 노드보다 크다.
+            node.right = newNode;
+        }
+        size++;
+        modCount++;
+        for (int i = 0; i < depth; i++) {
+            path[i].count++;
+        }
+        if (balanced) {
+            rebalancePath(depth);
+        }
+        Arrays.fill(path, 0, depth, null);
+        return null;
     }
 
-    private V putHelper(Node node, K key, V value) {
-        if (key == null) {
-            throw new IllegalArgumentException("key is null.");
+    /**
+     * Walks back up the first `depth` nodes of the path after an insert or
+     * remove, updating heights and rotating where a node is out of balance.  Stops
+     * as soon as a subtree's height is unchanged, because nothing above it
+     * can have changed either.
+     */
+    private void rebalancePath(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node node = path[i];
+            int oldHeight = node.height;
+            Node top = rebalance(node);
+            if (top != node) {
+                replaceChild(i == 0 ? null : path[i - 1], node, top);
+            }
+            if (top.height == oldHeight) {
+                break;
+            }
         }
-        // If key is already in the tree, it replaces the old value with the new, and returns the old value.
-        if (equals(key, node.key)) {
-            V oldValue = node.value;
-            node.value = value;
-            return oldValue;
+    }
+
+    /**
+     * Makes `newChild` take the place of `oldChild` under `parent`, or at
+     * the root if `parent` is null.
+     */
+    private void replaceChild(Node parent, Node oldChild, Node newChild) {
+        if (parent == null) {
+            root = newChild;
+        } else if (parent.left == oldChild) {
+            parent.left = newChild;
+        } else {
+            parent.right = newChild;
         }
+    }
 
-        // If key is not in the tree, it creates a new node, finds the right place to add it, and returns null.
-        @SuppressWarnings("unchecked")
-        Comparable<? super K> k = (Comparable<? super K>) key;
+    private int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
 
-        if (k.compareTo(node.key) < 0) { // 현재 노드보다 작다.
-            if (node.left == null) {
-                node.left = makeNode(key, value);
-                size++;
-            } else {
-                putHelper(node.left, key, value);
+    private int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Recomputes the height and count of `node` from its children.
+     */
+    private void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.count = count(node.left) + count(node.right) + 1;
+    }
+
+    /**
+     * Updates the height and count of `node` and, if its subtrees differ in height by
+     * two, rotates it (twice, if the taller grandchild is on the inside).
+     *
+     * @return the root of the subtree, which may be a different node
+     */
+    private Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
             }
-        } else { // 현재 노드보다 크다.
-            if (node.right == null) {
-                node.right = makeNode(key, value);
-                size++;
-            } else {
-                putHelper(node.right, key, value);
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
             }
+            return rotateLeft(node);
         }
+        return node;
+    }
 
-        return null;
+    /**
+     * Makes the left child of `node` the root of the subtree.
+     */
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    /**
+     * Makes the right child of `node` the root of the subtree.
+     */
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
     }
 
     @Override
@@ -209,75 +427,1098 @@ public class MyTreeMap<K, V> implements Map<K, V> {
         }
     }
 
+    /**
+     * Removes the key.  If its node has two children, the node takes the
+     * key and value of its successor, and the successor's node is removed
+     * instead; either way, the node that goes has at most one child, which
+     * takes its place.
+     *
+     * @param key
+     * @return the old value, or null if the key was not in the map
+     */
     @Override
     public V remove(Object key) {
-        // OPTIONAL TODO: FILL THIS IN!
-        throw new UnsupportedOperationException();
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            int compare = compare(key, node.key);
+            if (compare == 0) {
+                break;
+            }
+            depth = pushPath(depth, node);
+            node = compare < 0 ? node.left : node.right;
+        }
+        if (node == null) {
+            return null;
+        }
+
+        V oldValue = node.value;
+        if (node.left != null && node.right != null) {
+            depth = pushPath(depth, node);
+            Node successor = node.right;
+            while (successor.left != null) {
+                depth = pushPath(depth, successor);
+                successor = successor.left;
+            }
+            node.key = successor.key;
+            node.value = successor.value;
+            node = successor;
+        }
+        Node child = node.left != null ? node.left : node.right;
+        replaceChild(depth == 0 ? null : path[depth - 1], node, child);
+        size--;
+        modCount++;
+        for (int i = 0; i < depth; i++) {
+            path[i].count--;
+        }
+        if (balanced) {
+            rebalancePath(depth);
+        }
+        Arrays.fill(path, 0, depth, null);
+        return oldValue;
+    }
+
+    /**
+     * Stores `node` at position `depth` of the path, growing it if
+     * necessary, and returns the new depth.
+     */
+    private int pushPath(int depth, Node node) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth] = node;
+        return depth + 1;
+    }
+
+    /**
+     * Returns the node with the least key, or null if the map is empty.
+     */
+    private Node firstNode() {
+        Node node = root;
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node with the greatest key, or null if the map is empty.
+     */
+    private Node lastNode() {
+        Node node = root;
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the node with the least key greater than `key` (or equal to
+     * it, if `inclusive`), or null if there is none.
+     */
+    private Node ceilingNode(Object key, boolean inclusive) {
+        Node result = null;
+        Node node = root;
+        while (node != null) {
+            int compare = compare(key, node.key);
+            if (compare < 0 || (compare == 0 && inclusive)) {
+                // a candidate; anything better is to the left
+                result = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node with the greatest key less than `key` (or equal to
+     * it, if `inclusive`), or null if there is none.
+     */
+    private Node floorNode(Object key, boolean inclusive) {
+        Node result = null;
+        Node node = root;
+        while (node != null) {
+            int compare = compare(key, node.key);
+            if (compare > 0 || (compare == 0 && inclusive)) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an immutable copy of the entry, or null.
+     */
+    private static <K, V> Entry<K, V> exportEntry(Entry<K, V> entry) {
+        return entry == null ? null : new AbstractMap.SimpleImmutableEntry<>(entry);
+    }
+
+    private static <K> K keyOrNull(Entry<K, ?> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    private static <K> K keyOrThrow(Entry<K, ?> entry) {
+        if (entry == null) {
+            throw new NoSuchElementException();
+        }
+        return entry.getKey();
     }
 
     @Override
-    public int size() {
-        return size;
+    public Entry<K, V> lowerEntry(K key) {
+        return exportEntry(floorNode(key, false));
     }
 
     @Override
-    public Collection<V> values() {
-        Set<V> set = new HashSet<>();
-        Deque<Node> stack = new LinkedList<>();
-        stack.push(root);
-        while (!stack.isEmpty()) {
-            Node node = stack.pop();
-            if (node == null) continue;
-            set.add(node.value);
-            stack.push(node.left);
-            stack.push(node.right);
+    public K lowerKey(K key) {
+        return keyOrNull(floorNode(key, false));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return exportEntry(floorNode(key, true));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key, true));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return exportEntry(ceilingNode(key, true));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key, true));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return exportEntry(ceilingNode(key, false));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(ceilingNode(key, false));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return exportEntry(firstNode());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return exportEntry(lastNode());
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastNode());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        Entry<K, V> entry = exportEntry(firstNode());
+        if (entry != null) {
+            remove(entry.getKey());
+        }
+        return entry;
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        Entry<K, V> entry = exportEntry(lastNode());
+        if (entry != null) {
+            remove(entry.getKey());
         }
-        return set;
+        return entry;
     }
 
     /**
-     * Makes a node.
-     * <p>
-     * This is only here for testing purposes.  Should not be used otherwise.
+     * Returns the key with the given index in sorted order, so select(0) is
+     * the least key and select(size() - 1) the greatest.
      *
-     * @param key
-     * @param value
+     * @param index
      * @return
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
      */
-    public Node makeNode(K key, V value) {
-        return new Node(key, value);
+    public K select(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Node node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (index < leftCount) {
+                node = node.left;
+            } else if (index > leftCount) {
+                index -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node.key;
+            }
+        }
     }
 
     /**
-     * Sets the instance variables.
-     * <p>
-     * This is only here for testing purposes.  Should not be used otherwise.
+     * Returns the number of keys less than `key`, which is the index of the
+     * key if it is in the map, or where it would go if it is not.
      *
-     * @param node
-     * @param size
+     * @param key
+     * @return
      */
-    public void setTree(Node node, int size) {
-        this.root = node;
-        this.size = size;
+    public int rank(Object key) {
+        return countLess(key, false);
     }
 
     /**
-     * Returns the height of the tree.
-     * <p>
-     * This is only here for testing purposes.  Should not be used otherwise.
+     * Returns the number of keys between `lo` and `hi`, including both.
      *
+     * @param lo
+     * @param hi
      * @return
      */
-    public int height() {
-        return heightHelper(root);
+    public int countInRange(K lo, K hi) {
+        return Math.max(0, countLess(hi, true) - countLess(lo, false));
     }
 
-    private int heightHelper(Node node) {
-        if (node == null) {
-            return 0;
+    /**
+     * Counts the keys less than `key` (or equal to it, if `inclusive`),
+     * adding up the left subtrees it passes on the way down.
+     */
+    private int countLess(Object key, boolean inclusive) {
+        int result = 0;
+        Node node = root;
+        while (node != null) {
+            int compare = compare(key, node.key);
+            if (compare < 0 || (compare == 0 && !inclusive)) {
+                node = node.left;
+            } else {
+                result += count(node.left) + 1;
+                if (compare == 0) {
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns null, because the keys are in their natural order.
+     */
+    @Override
+    public Comparator<? super K> comparator() {
+        return null;
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(true, null, false, true, null, false, true);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new SubMap(true, null, false, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap(false, fromKey, inclusive, true, null, false, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * A view of the keys between two bounds, in ascending or descending
+     * order.  A bound is either missing, which means the range is open at
+     * that end, or a key, which may or may not be included.
+     * <p>
+     * The `abs` methods work in ascending order and stay within the range;
+     * the NavigableMap methods map onto them, swapping ends if the view is
+     * descending.
+     */
+    private class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final boolean fromStart;
+        private final K lo;
+        private final boolean loInclusive;
+        private final boolean toEnd;
+        private final K hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        public SubMap(boolean fromStart, K lo, boolean loInclusive,
+                      boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            if (!fromStart && !toEnd && compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            if (!fromStart) {
+                compare(lo, lo);    // checks the type and null
+            }
+            if (!toEnd) {
+                compare(hi, hi);
+            }
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        boolean tooLow(Object key) {
+            if (fromStart) {
+                return false;
+            }
+            int c = compare(key, lo);
+            return c < 0 || (c == 0 && !loInclusive);
+        }
+
+        boolean tooHigh(Object key) {
+            if (toEnd) {
+                return false;
+            }
+            int c = compare(key, hi);
+            return c > 0 || (c == 0 && !hiInclusive);
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        /**
+         * Returns whether `key` may be a bound of a view inside this one.
+         * An exclusive bound may be one of this view's bounds even if that
+         * bound is excluded.
+         */
+        private boolean inRange(Object key, boolean inclusive) {
+            if (inclusive) {
+                return inRange(key);
+            }
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(key, hi) <= 0);
+        }
+
+        private Node inRangeOrNull(Node node) {
+            return node == null || !inRange(node.key) ? null : node;
+        }
+
+        Node absLowest() {
+            Node node = fromStart ? firstNode() : ceilingNode(lo, loInclusive);
+            return node == null || tooHigh(node.key) ? null : node;
+        }
+
+        Node absHighest() {
+            Node node = toEnd ? lastNode() : floorNode(hi, hiInclusive);
+            return node == null || tooLow(node.key) ? null : node;
+        }
+
+        Node absCeiling(Object key, boolean inclusive) {
+            return tooLow(key) ? absLowest() : inRangeOrNull(ceilingNode(key, inclusive));
+        }
+
+        Node absFloor(Object key, boolean inclusive) {
+            return tooHigh(key) ? absHighest() : inRangeOrNull(floorNode(key, inclusive));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && MyTreeMap.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? MyTreeMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return MyTreeMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? MyTreeMap.this.remove(key) : null;
+        }
+
+        /**
+         * Counts the keys in the range by rank, in O(h) time.
+         */
+        @Override
+        public int size() {
+            int below = toEnd ? MyTreeMap.this.size() : countLess(hi, hiInclusive);
+            int excluded = fromStart ? 0 : countLess(lo, !loInclusive);
+            return Math.max(0, below - excluded);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return absLowest() == null;
+        }
+
+        @Override
+        public void clear() {
+            for (Iterator<Entry<K, V>> it = iterator(); it.hasNext(); ) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        private Iterator<Entry<K, V>> iterator() {
+            return new TreeIterator(this, descending);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return MapViews.entrySet(this, this::iterator);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public Collection<V> values() {
+            return MapViews.values(this, this::iterator);
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(this);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public Entry<K, V> lowerEntry(K key) {
+            return exportEntry(descending ? absCeiling(key, false) : absFloor(key, false));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(lowerEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> floorEntry(K key) {
+            return exportEntry(descending ? absCeiling(key, true) : absFloor(key, true));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(floorEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> ceilingEntry(K key) {
+            return exportEntry(descending ? absFloor(key, true) : absCeiling(key, true));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(ceilingEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> higherEntry(K key) {
+            return exportEntry(descending ? absFloor(key, false) : absCeiling(key, false));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(higherEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> firstEntry() {
+            return exportEntry(descending ? absHighest() : absLowest());
+        }
+
+        @Override
+        public Entry<K, V> lastEntry() {
+            return exportEntry(descending ? absLowest() : absHighest());
+        }
+
+        @Override
+        public K firstKey() {
+            return keyOrThrow(firstEntry());
+        }
+
+        @Override
+        public K lastKey() {
+            return keyOrThrow(lastEntry());
+        }
+
+        @Override
+        public Entry<K, V> pollFirstEntry() {
+            Entry<K, V> entry = firstEntry();
+            if (entry != null) {
+                MyTreeMap.this.remove(entry.getKey());
+            }
+            return entry;
+        }
+
+        @Override
+        public Entry<K, V> pollLastEntry() {
+            Entry<K, V> entry = lastEntry();
+            if (entry != null) {
+                MyTreeMap.this.remove(entry.getKey());
+            }
+            return entry;
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder() : null;
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive) || !inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            if (descending) {
+                return new SubMap(false, toKey, toInclusive, false, fromKey, fromInclusive, true);
+            }
+            return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            if (descending) {
+                return new SubMap(false, toKey, inclusive, toEnd, hi, hiInclusive, true);
+            }
+            return new SubMap(fromStart, lo, loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            if (descending) {
+                return new SubMap(fromStart, lo, loInclusive, false, fromKey, inclusive, true);
+            }
+            return new SubMap(false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    /**
+     * The keys of a NavigableMap, as a NavigableSet that reads through to
+     * the map.
+     */
+    private static class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K, ?> map;
+
+        public KeySet(NavigableMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            final Iterator<? extends Entry<K, ?>> it = map.entrySet().iterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return it.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            return map.containsKey(obj);
+        }
+
+        @Override
+        public boolean remove(Object obj) {
+            if (!map.containsKey(obj)) {
+                return false;
+            }
+            map.remove(obj);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public K lower(K key) {
+            return map.lowerKey(key);
+        }
+
+        @Override
+        public K floor(K key) {
+            return map.floorKey(key);
+        }
+
+        @Override
+        public K ceiling(K key) {
+            return map.ceilingKey(key);
+        }
+
+        @Override
+        public K higher(K key) {
+            return map.higherKey(key);
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K pollFirst() {
+            return keyOrNull(map.pollFirstEntry());
+        }
+
+        @Override
+        public K pollLast() {
+            return keyOrNull(map.pollLastEntry());
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a view of the values in key order, which reads through to the
+     * map.
+     */
+    @Override
+    public Collection<V> values() {
+        return MapViews.values(this, () -> new TreeIterator(null, false));
+    }
+
+    /**
+     * In-order Iterator over the tree, or over the range of a SubMap, in
+     * either direction.
+     * <p>
+     * Like TreeSpliterator, the stack holds the nodes whose left subtrees are
+     * done (right subtrees, going backward), so it holds at most h nodes for
+     * a tree of height h.  It starts by searching for the first key in the
+     * range, pushing each node it passes that comes after the key, and it
+     * stops at the first key past the other end.  After a remove, the tree
+     * may have changed shape, so it finds its place again the same way,
+     * starting after the removed key.
+     */
+    private class TreeIterator implements Iterator<Entry<K, V>> {
+        private final Deque<Node> stack = new ArrayDeque<>();
+        private final SubMap range;         // or null for the whole map
+        private final boolean descending;
+        private int expectedModCount = modCount;
+        private Node last;    // returned by next, or null
+
+        public TreeIterator(SubMap range, boolean descending) {
+            this.range = range;
+            this.descending = descending;
+            if (descending) {
+                if (range == null || range.toEnd) {
+                    pushRight(root);
+                } else {
+                    seek(range.hi, range.hiInclusive);
+                }
+            } else {
+                if (range == null || range.fromStart) {
+                    pushLeft(root);
+                } else {
+                    seek(range.lo, range.loInclusive);
+                }
+            }
+        }
+
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+        private void pushRight(Node node) {
+            for (; node != null; node = node.right) {
+                stack.push(node);
+            }
+        }
+
+        /**
+         * Fills the stack so the next node is the first one at or after
+         * `key` in the direction of iteration (or strictly after it, if not
+         * `inclusive`).
+         */
+        private void seek(Object key, boolean inclusive) {
+            stack.clear();
+            Node node = root;
+            while (node != null) {
+                int compare = compare(key, node.key);
+                if (descending) {
+                    compare = -compare;
+                }
+                if (compare < 0 || (compare == 0 && inclusive)) {
+                    stack.push(node);
+                    node = descending ? node.right : node.left;
+                } else {
+                    node = descending ? node.left : node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            Node node = stack.peek();
+            if (node == null) {
+                return false;
+            }
+            if (range == null) {
+                return true;
+            }
+            return descending ? !range.tooLow(node.key) : !range.tooHigh(node.key);
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node node = stack.pop();
+            if (descending) {
+                pushRight(node.left);
+            } else {
+                pushLeft(node.right);
+            }
+            last = node;
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            K key = last.key;
+            MyTreeMap.this.remove(key);
+            expectedModCount = modCount;
+            last = null;
+            seek(key, false);
+        }
+    }
+
+    /**
+     * Returns a Spliterator over the entries in key order, which splits by
+     * subtree.  The nodes themselves are the entries, so traversal doesn't
+     * allocate.
+     * <p>
+     * Map has no spliterator of its own; use
+     * `StreamSupport.stream(map.entrySpliterator(), true)` for a parallel stream.
+     *
+     * @return
+     */
+    public Spliterator<Entry<K, V>> entrySpliterator() {
+        return new TreeSpliterator(null, size);
+    }
+
+    /**
+     * In-order Spliterator over part of the tree.
+     * <p>
+     * The stack holds the nodes whose left subtrees are done; each one stands
+     * for itself followed by its right subtree, and the top comes first.  So
+     * removing the bottom node leaves a stack that covers everything before
+     * it, which is the prefix that trySplit hands off.  For a tree of height
+     * h, that is the whole left subtree of the root, and the stack holds at
+     * most h nodes.
+     */
+    private class TreeSpliterator implements Spliterator<Entry<K, V>> {
+        private Deque<Node> stack;    // null until bound to the tree
+        private long estimate;
+
+        public TreeSpliterator(Deque<Node> stack, long estimate) {
+            this.stack = stack;
+            this.estimate = estimate;
+        }
+
+        private Deque<Node> getStack() {
+            if (stack == null) {
+                stack = new ArrayDeque<>();
+                pushLeft(root);
+            }
+            return stack;
+        }
+
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+        @Override
+        public Spliterator<Entry<K, V>> trySplit() {
+            Deque<Node> stack = getStack();
+            if (stack.size() >= 2) {
+                // hand off everything above the bottom node
+                Node bottom = stack.removeLast();
+                Spliterator<Entry<K, V>> prefix = new TreeSpliterator(stack, estimate >>>= 1);
+                this.stack = new ArrayDeque<>();
+                this.stack.push(bottom);
+                return prefix;
+            }
+            Node node = stack.peek();
+            if (node == null || node.right == null) {
+                return null;
+            }
+            // hand off the node by itself and keep its right subtree
+            stack.pop();
+            pushLeft(node.right);
+            estimate = Math.max(0, estimate - 1);
+            return Collections.<Entry<K, V>>singletonList(node).spliterator();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
+            Deque<Node> stack = getStack();
+            if (stack.isEmpty()) {
+                return false;
+            }
+            Node node = stack.pop();
+            pushLeft(node.right);
+            estimate = Math.max(0, estimate - 1);
+            action.accept(node);
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+    }
+
+    /**
+     * Makes a node.
+     * <p>
+     * This is only here for testing purposes.  Should not be used otherwise.
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    public Node makeNode(K key, V value) {
+        return new Node(key, value);
+    }
+
+    /**
+     * Sets the instance variables, and computes the heights and counts of
+     * the nodes.
+     * <p>
+     * This is only here for testing purposes.  Should not be used otherwise.
+     * A balanced map doesn't rebalance the tree it is given, but keeps
+     * balancing from there on.
+     *
+     * @param node
+     * @param size
+     */
+    public void setTree(Node node, int size) {
+        this.root = node;
+        this.size = size;
+        this.modCount++;
+        computeSubtrees(node);
+    }
+
+    /**
+     * Sets the height and count of every node in the subtree, children
+     * first, without recursion.
+     */
+    private void computeSubtrees(Node node) {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node last = null;
+        while (node != null || !stack.isEmpty()) {
+            if (node != null) {
+                stack.push(node);
+                node = node.left;
+                continue;
+            }
+            Node top = stack.peek();
+            if (top.right != null && top.right != last) {
+                node = top.right;
+            } else {
+                update(top);
+                last = stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Returns the height of the tree.  For a balanced tree, that is at most
+     * 1.44 log2(n + 2); for an unbalanced tree, it can be as much as n.
+     * <p>
+     * This is only here for testing purposes.  Should not be used otherwise.
+     *
+     * @return
+     */
+    public int height() {
+        if (balanced) {
+            return height(root);
+        }
+        // heights aren't kept up to date, so count the levels
+        int height = 0;
+        Deque<Node> level = new ArrayDeque<>();
+        if (root != null) {
+            level.add(root);
+        }
+        while (!level.isEmpty()) {
+            height++;
+            for (int i = level.size(); i > 0; i--) {
+                Node node = level.remove();
+                if (node.left != null) level.add(node.left);
+                if (node.right != null) level.add(node.right);
+            }
         }
-        int left = heightHelper(node.left);
-        int right = heightHelper(node.right);
-        return Math.max(left, right) + 1;
+        return height;
     }
 }
@@ -0,0 +1,560 @@
+package com.allendowney.thinkdast;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Implementation of a List using an unrolled linked list: a doubly-linked list
+ * of nodes where each node holds a small array of elements.
+ * <p>
+ * Scanning touches one node per chunk instead of one node per element, and
+ * adding or removing only shifts elements within one chunk.  A full node is
+ * split in half, and a node that drops below half full borrows from or merges
+ * with the next node, so every node but the last is at least half full.
+ *
+ * @param <E>
+ */
+public class MyUnrolledList<E> extends AbstractList<E> {
+
+    /**
+     * A chunk of up to `capacity` elements.
+     */
+    private class Node {
+        public Object[] items = new Object[capacity];
+        public int count;
+        public Node prev;
+        public Node next;
+    }
+
+    /**
+     * The location of an element: a node and an offset within it.
+     */
+    private class Position {
+        public final Node node;
+        public final int offset;
+
+        public Position(Node node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+    }
+
+    private final int capacity;  // maximum number of elements per node
+    private int size;            // keeps track of the number of elements
+    private Node first;          // never null; empty only if the list is empty
+    private Node last;
+
+    /**
+     * Makes a list with 64 elements per node.
+     */
+    public MyUnrolledList() {
+        this(64);
+    }
+
+    /**
+     * @param capacity maximum number of elements per node
+     */
+    public MyUnrolledList(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        first = last = new Node();
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (last.count == capacity) {
+            linkAfter(last);
+        }
+        last.items[last.count++] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (index == size) {
+            add(element);
+            return;
+        }
+        Position pos = findPosition(index);
+        insert(pos.node, pos.offset, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        for (E element : collection) {
+            add(element);
+        }
+        return !collection.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        first = last = new Node();
+        size = 0;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        Position pos = findPosition(index);
+        return (E) pos.node.items[pos.offset];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E set(int index, E element) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        Position pos = findPosition(index);
+        E old = (E) pos.node.items[pos.offset];
+        pos.node.items[pos.offset] = element;
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        Position pos = findPosition(index);
+        E old = (E) pos.node.items[pos.offset];
+        delete(pos.node, pos.offset);
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the node that contains the element at `index`, walking from
+     * whichever end is nearer.
+     *
+     * @param index in the range [0, size)
+     * @return
+     */
+    private Position findPosition(int index) {
+        Node node;
+        if (index < size / 2) {
+            node = first;
+            while (index >= node.count) {
+                index -= node.count;
+                node = node.next;
+            }
+        } else {
+            node = last;
+            index = size - 1 - index;
+            while (index >= node.count) {
+                index -= node.count;
+                node = node.prev;
+            }
+            index = node.count - 1 - index;
+        }
+        return new Position(node, index);
+    }
+
+    /**
+     * Makes a new empty node and links it in after `node`.
+     *
+     * @param node
+     * @return the new node
+     */
+    private Node linkAfter(Node node) {
+        Node node2 = new Node();
+        node2.prev = node;
+        node2.next = node.next;
+        if (node.next == null) {
+            last = node2;
+        } else {
+            node.next.prev = node2;
+        }
+        node.next = node2;
+        return node2;
+    }
+
+    /**
+     * Removes `node` from the chain of nodes.
+     *
+     * @param node must not be `first`
+     */
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        if (node.next == null) {
+            last = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+    }
+
+    /**
+     * Inserts an element at the given position, splitting the node if it is full.
+     *
+     * @param node
+     * @param index position within the node, in the range [0, count]
+     * @param element
+     * @return the node that ends up holding the element
+     */
+    private Node insert(Node node, int index, E element) {
+        if (node.count == capacity) {
+            // move the upper half into a new node
+            Node node2 = linkAfter(node);
+            int half = capacity / 2;
+            node2.count = capacity - half;
+            System.arraycopy(node.items, half, node2.items, 0, node2.count);
+            Arrays.fill(node.items, half, capacity, null);
+            node.count = half;
+            if (index > half) {
+                index -= half;
+                node = node2;
+            }
+        }
+        System.arraycopy(node.items, index, node.items, index + 1, node.count - index);
+        node.items[index] = element;
+        node.count++;
+        size++;
+        modCount++;
+        return node;
+    }
+
+    /**
+     * Deletes the element at the given position, then refills the node from
+     * the next one if it has fallen below half full.
+     * <p>
+     * Elements before `index` in `node` do not move.
+     *
+     * @param node
+     * @param index position within the node, in the range [0, count)
+     * @return true if `node` was unlinked because it became empty
+     */
+    private boolean delete(Node node, int index) {
+        System.arraycopy(node.items, index + 1, node.items, index, node.count - index - 1);
+        node.count--;
+        node.items[node.count] = null;
+        size--;
+        modCount++;
+
+        int half = capacity / 2;
+        Node next = node.next;
+        if (node.count >= half) {
+            return false;
+        }
+        if (next == null) {
+            // the last node is allowed to be small, but not empty
+            if (node.count == 0 && node != first) {
+                unlink(node);
+                return true;
+            }
+            return false;
+        }
+        // merge the whole next node if it fits, otherwise borrow from it
+        int n = (node.count + next.count <= capacity) ? next.count : half - node.count;
+        System.arraycopy(next.items, 0, node.items, node.count, n);
+        node.count += n;
+        System.arraycopy(next.items, n, next.items, 0, next.count - n);
+        Arrays.fill(next.items, next.count - n, next.count, null);
+        next.count -= n;
+        if (next.count == 0) {
+            unlink(next);
+        }
+        return false;
+    }
+
+    /**
+     * Removes every element that matches the filter, compacting the survivors
+     * into full nodes in a single pass.
+     * <p>
+     * If the filter throws, the pass goes on without it, keeping the element
+     * it threw on and every element after it, and then rethrows.  So the
+     * nodes and the size stay consistent, with no element lost or repeated.
+     *
+     * @param filter
+     * @return true if any element was removed
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        // elements before the first removal stay where they are; after that,
+        // the write position never passes the read position, because no node
+        // holds more than `capacity` elements
+        Node dest = null;
+        int destCount = 0;
+        int newSize = 0;
+        RuntimeException thrown = null;
+        for (Node node = first; node != null; node = node.next) {
+            int count = node.count;
+            for (int i = 0; i < count; i++) {
+                E element = (E) node.items[i];
+                boolean remove = false;
+                if (thrown == null) {
+                    try {
+                        remove = filter.test(element);
+                    } catch (RuntimeException e) {
+                        thrown = e;
+                    }
+                }
+                if (remove) {
+                    if (dest == null) {
+                        dest = node;
+                        destCount = i;
+                    }
+                    continue;
+                }
+                newSize++;
+                if (dest == null) {
+                    continue;
+                }
+                if (destCount == capacity) {
+                    dest.count = capacity;
+                    dest = dest.next;
+                    destCount = 0;
+                }
+                dest.items[destCount++] = element;
+            }
+        }
+        if (dest != null) {
+            Arrays.fill(dest.items, destCount, capacity, null);
+            dest.count = destCount;
+            if (destCount == 0 && dest != first) {
+                dest = dest.prev;
+            }
+            dest.next = null;
+            last = dest;
+            size = newSize;
+            modCount++;
+        }
+        if (thrown != null) {
+            throw thrown;
+        }
+        return dest != null;
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return collection.contains(element);
+            }
+        });
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> collection) {
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return !collection.contains(element);
+            }
+        });
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ListItr(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new ListItr(index);
+    }
+
+    /**
+     * A ListIterator that walks the nodes directly, so a full scan costs
+     * one pointer per node rather than a search per element.
+     */
+    private class ListItr implements ListIterator<E> {
+        private Node node;                      // node and offset of the next element;
+        private int offset;                     // offset may equal node.count
+        private int index;
+        private Node lastNode;                  // position of the last element returned,
+        private int lastOffset;                 // or null
+        private boolean forward;                // whether that was from next()
+        private int expectedModCount = modCount;
+
+        ListItr(int index) {
+            if (index == size) {
+                node = last;
+                offset = last.count;
+            } else {
+                Position pos = findPosition(index);
+                node = pos.node;
+                offset = pos.offset;
+            }
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            while (offset >= node.count) {
+                node = node.next;
+                offset = 0;
+            }
+            lastNode = node;
+            lastOffset = offset;
+            forward = true;
+            offset++;
+            index++;
+            return (E) lastNode.items[lastOffset];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E previous() {
+            checkForComodification();
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            while (offset == 0) {
+                node = node.prev;
+                offset = node.count;
+            }
+            offset--;
+            index--;
+            lastNode = node;
+            lastOffset = offset;
+            forward = false;
+            return (E) lastNode.items[lastOffset];
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastNode == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            // the next element slides into the removed one's place
+            node = lastNode;
+            offset = lastOffset;
+            if (delete(lastNode, lastOffset)) {
+                node = node.prev;
+                offset = node.count;
+            }
+            if (forward) {
+                index--;
+            }
+            lastNode = null;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(E element) {
+            if (lastNode == null) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            lastNode.items[lastOffset] = element;
+        }
+
+        @Override
+        public void add(E element) {
+            checkForComodification();
+            if (index == size) {
+                MyUnrolledList.this.add(element);
+                node = last;
+                offset = last.count;
+            } else {
+                Node before = node;
+                node = insert(node, offset, element);
+                offset = (node == before ? offset : offset - before.count) + 1;
+            }
+            index++;
+            lastNode = null;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Times scans, middle inserts and middle removes against MyArrayList
+     * and MyLinkedList.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = 100000;
+        List<List<Integer>> lists = Arrays.<List<Integer>>asList(
+                new MyArrayList<Integer>(), new MyLinkedList<Integer>(), new MyUnrolledList<Integer>());
+        for (List<Integer> list : lists) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                list.add(list.size() / 2, i);
+            }
+            long insert = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long total = 0;
+            for (int rep = 0; rep < 100; rep++) {
+                for (int x : list) {
+                    total += x;
+                }
+            }
+            long scan = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            while (!list.isEmpty()) {
+                list.remove(list.size() / 2);
+            }
+            long remove = System.nanoTime() - start;
+
+            System.out.println(list.getClass().getSimpleName()
+                    + ": middle insert " + insert / 1000000 + " ms"
+                    + ", 100 scans " + scan / 1000000 + " ms"
+                    + ", middle remove " + remove / 1000000 + " ms"
+                    + " (" + total + ")");
+        }
+    }
+}
@@ -20,7 +20,7 @@ public class WikiCrawler {
     private JedisIndex index;
 
     // queue of URLs to be indexed
-    private Queue<String> queue = new LinkedList<>();
+    private final Queue<String> queue;
 
     // fetcher used to get pages from Wikipedia
     final static WikiFetcher wf = new WikiFetcher();
@@ -32,9 +32,28 @@ public class WikiCrawler {
      * @param index
      */
     public WikiCrawler(String source, JedisIndex index) {
+        this(source, index, new LinkedList<String>());
+        queue.offer(source);
+    }
+
+    /**
+     * Constructor that uses the given queue as the frontier.
+     * <p>
+     * To let several fetch workers share one frontier, pass a thread-safe
+     * queue such as MyConcurrentArrayQueue and give each worker a crawler
+     * that uses it.  If a bounded queue is full, new links are dropped.
+     * <p>
+     * This constructor does not add `source` to the queue, so that N workers
+     * don't crawl it N times; the caller seeds the shared queue once.
+     *
+     * @param source
+     * @param index
+     * @param queue
+     */
+    public WikiCrawler(String source, JedisIndex index, Queue<String> queue) {
         this.source = source;
         this.index = index;
-        queue.offer(source);
+        this.queue = queue;
     }
 
     /**
@@ -54,9 +73,10 @@ public class WikiCrawler {
      * @throws IOException
      */
     public String crawl(boolean testing) throws IOException {
-        if (queue.isEmpty()) return null;
-
+        // poll rather than check isEmpty first, in case another worker shares the queue
         String url = queue.poll();
+        if (url == null) return null;
+
         System.out.println("Crawling " + url);
 
         if (!testing && index.isIndexed(url)) {
@@ -0,0 +1,249 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class HashBucketTest {
+
+    private HashBucket<Object, Integer> bucket;
+
+    @Before
+    public void setUp() {
+        bucket = new HashBucket<>();
+    }
+
+    /**
+     * Returns every ordering of the letters of `word`, which all have the
+     * same hash code.
+     */
+    private static List<ComparableSillyString> anagrams(String word) {
+        List<ComparableSillyString> result = new ArrayList<>();
+        permute("", word, result);
+        return result;
+    }
+
+    private static void permute(String prefix, String rest, List<ComparableSillyString> result) {
+        if (rest.isEmpty()) {
+            result.add(new ComparableSillyString(prefix));
+            return;
+        }
+        for (int i = 0; i < rest.length(); i++) {
+            permute(prefix + rest.charAt(i), rest.substring(0, i) + rest.substring(i + 1), result);
+        }
+    }
+
+    /**
+     * A key that is not Comparable, with a terrible hash code.
+     */
+    private static class Incomparable {
+        private final int id;
+
+        Incomparable(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Incomparable && ((Incomparable) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 3;
+        }
+    }
+
+    /**
+     * A key whose compareTo looks only at `id`, so it is inconsistent with
+     * equals, which looks at `name` too.  Every key has the same hash code.
+     */
+    private static class ById implements Comparable<ById> {
+        private final int id;
+        private final String name;
+
+        ById(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ById && ((ById) obj).id == id && ((ById) obj).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(ById other) {
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * A key that is Comparable, but to a different type, so it can't be
+     * compared with another key of its own class.
+     */
+    private static class ComparableToString implements Comparable<String> {
+        private final int id;
+
+        ComparableToString(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ComparableToString && ((ComparableToString) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(String other) {
+            throw new ClassCastException();
+        }
+    }
+
+    @Test
+    public void testTreeifyAndBack() {
+        List<ComparableSillyString> keys = anagrams("abcde");
+        for (int i = 0; i < keys.size(); i++) {
+            bucket.put(keys.get(i), i);
+            assertThat(bucket.isTree(), is(i >= HashBucket.TREEIFY_THRESHOLD));
+        }
+        assertThat(bucket.size(), is(keys.size()));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(bucket.get(new ComparableSillyString(keys.get(i).toString())), is(i));
+        }
+        assertThat(bucket.get(new ComparableSillyString("edcbb")), nullValue());
+
+        for (int i = keys.size() - 1; i > HashBucket.UNTREEIFY_THRESHOLD; i--) {
+            assertThat(bucket.remove(keys.get(i)), is(i));
+            assertThat(bucket.isTree(), is(true));
+        }
+        assertThat(bucket.remove(keys.get(HashBucket.UNTREEIFY_THRESHOLD)), is(HashBucket.UNTREEIFY_THRESHOLD));
+        assertThat(bucket.isTree(), is(false));
+        assertThat(bucket.size(), is(HashBucket.UNTREEIFY_THRESHOLD));
+        for (int i = 0; i < HashBucket.UNTREEIFY_THRESHOLD; i++) {
+            assertThat(bucket.get(keys.get(i)), is(i));
+        }
+    }
+
+    @Test
+    public void testMixedKeys() {
+        Map<Object, Integer> expected = new HashMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            int n = random.nextInt(60);
+            Object key;
+            if (n == 0) {
+                key = null;
+            } else if (n < 20) {
+                key = new Incomparable(n);
+            } else if (n < 40) {
+                key = new ComparableSillyString(Integer.toString(n));
+            } else {
+                key = Integer.toString(n);
+            }
+            if (random.nextInt(3) == 0) {
+                assertThat(bucket.remove(key), is(expected.remove(key)));
+            } else {
+                bucket.put(key, i);
+                expected.put(key, i);
+            }
+            assertThat(bucket.size(), is(expected.size()));
+        }
+        for (Map.Entry<Object, Integer> entry : expected.entrySet()) {
+            assertThat(bucket.get(entry.getKey()), is(entry.getValue()));
+        }
+        assertThat(bucket.keySet(), is(expected.keySet()));
+    }
+
+    /**
+     * Keys that compareTo says are the same, but that are not equal, are
+     * both kept, the same as java.util.HashMap.
+     */
+    @Test
+    public void testCompareToInconsistentWithEquals() {
+        Map<ById, Integer> expected = new HashMap<>();
+        MyHashMap<ById, Integer> map = new MyHashMap<>();
+        for (int i = 0; i < 12; i++) {
+            bucket.put(new ById(i, "x"), i);
+            map.put(new ById(i, "x"), i);
+            expected.put(new ById(i, "x"), i);
+        }
+        assertThat(bucket.isTree(), is(true));
+        bucket.put(new ById(3, "y"), 99);
+        map.put(new ById(3, "y"), 99);
+        expected.put(new ById(3, "y"), 99);
+
+        assertThat(bucket.size(), is(13));
+        assertThat(map.size(), is(expected.size()));
+        assertThat(bucket.get(new ById(3, "x")), is(3));
+        assertThat(bucket.get(new ById(3, "y")), is(99));
+        assertThat(bucket.get(new ById(3, "z")), nullValue());
+        for (Map.Entry<ById, Integer> entry : expected.entrySet()) {
+            assertThat(map.get(entry.getKey()), is(entry.getValue()));
+        }
+
+        assertThat(bucket.remove(new ById(3, "x")), is(3));
+        assertThat(bucket.containsKey(new ById(3, "x")), is(false));
+        assertThat(bucket.get(new ById(3, "y")), is(99));
+        bucket.put(new ById(3, "x"), 33);
+        assertThat(bucket.size(), is(13));
+        assertThat(bucket.get(new ById(3, "x")), is(33));
+        assertThat(bucket.remove(new ById(3, "y")), is(99));
+        assertThat(bucket.size(), is(12));
+    }
+
+    /**
+     * A key that is only Comparable to some other type goes with the keys
+     * that are not Comparable, instead of throwing ClassCastException.
+     */
+    @Test
+    public void testComparableToOtherType() {
+        for (int i = 0; i < 20; i++) {
+            bucket.put(new ComparableToString(i), i);
+        }
+        assertThat(bucket.isTree(), is(true));
+        assertThat(bucket.size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            assertThat(bucket.get(new ComparableToString(i)), is(i));
+        }
+        assertThat(bucket.remove(new ComparableToString(7)), is(7));
+        assertThat(bucket.containsKey(new ComparableToString(7)), is(false));
+    }
+
+    /**
+     * A MyHashMap full of colliding ComparableSillyStrings still works,
+     * with trees for buckets.
+     */
+    @Test
+    public void testSillyStringsInHashMap() {
+        MyHashMap<ComparableSillyString, Integer> map = new MyHashMap<>();
+        List<ComparableSillyString> keys = anagrams("abcdef");
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+        assertThat(map.size(), is(keys.size()));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(map.get(keys.get(i)), is(i));
+        }
+        assertThat(map.stats().getMaxChainLength(), is(keys.size()));
+    }
+}
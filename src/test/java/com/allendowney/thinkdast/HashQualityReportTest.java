@@ -0,0 +1,54 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class HashQualityReportTest {
+
+    @Test
+    public void testMultiplesOfPowerOfTwo() {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            keys.add(i * 1024);
+        }
+        HashQualityReport.Result identity = HashQualityReport.measure(keys, Hasher.IDENTITY, 4096);
+        HashQualityReport.Result mixed = HashQualityReport.measure(keys, Hasher.MIXED, 4096);
+        // without mixing, only the high bits differ, so the mask keeps 4 chains
+        assertThat(identity.getMaxChain(), is(1024));
+        assertThat(identity.getProbeRatio(), greaterThan(100.0));
+        assertThat(mixed.getProbeRatio(), lessThan(1.2));
+    }
+
+    @Test
+    public void testSillyStrings() {
+        List<ComparableSillyString> keys = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(new ComparableSillyString("term" + i));
+        }
+        // mixing can't separate keys whose hash codes are equal
+        HashQualityReport.Result mixed = HashQualityReport.measure(keys, Hasher.MIXED, 2048);
+        assertThat(mixed.getDistinctHashes(), lessThan(200));
+        assertThat(mixed.getProbeRatio(), greaterThan(5.0));
+    }
+
+    @Test
+    public void testReport() {
+        List<String> keys = Collections.singletonList("one");
+        String report = HashQualityReport.report(
+                Map.<String, List<?>>of("words", keys), Map.of("mixed", Hasher.MIXED));
+        assertThat(report, containsString("words"));
+        assertThat(report, containsString("mixed"));
+        assertThat(HashQualityReport.tableSizeFor(1000), is(1024));
+        assertThat(HashQualityReport.tableSizeFor(1024), is(1024));
+    }
+}
@@ -0,0 +1,72 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class HasherTest {
+
+    /**
+     * A key whose hash code is Integer.MIN_VALUE, which Math.abs can't
+     * make positive.
+     */
+    private static class MinKey {
+        @Override
+        public int hashCode() {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    @Test
+    public void testMinValue() {
+        for (Hasher hasher : new Hasher[]{Hasher.IDENTITY, Hasher.MIXED, Hasher.seeded(1)}) {
+            Map<Object, Integer> map = new MyHashMap<>(hasher);
+            MinKey key = new MinKey();
+            map.put(key, 1);
+            assertThat(map.get(key), is(1));
+        }
+    }
+
+    @Test
+    public void testMixIsOneToOne() {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            assertThat(seen.add(Hasher.mix(i)), is(true));
+        }
+        assertThat(Hasher.mix(0), is(0));
+    }
+
+    @Test
+    public void testSeeds() {
+        assertThat(Hasher.seeded(1).hash("term"), is(Hasher.seeded(1).hash("term")));
+        assertThat(Hasher.seeded(1).hash("term"), not(Hasher.seeded(2).hash("term")));
+        assertThat(Hasher.strings(1).hash("term"), is(Hasher.strings(1).hash(new String("term"))));
+        assertThat(Hasher.strings(1).hash("term"), not(Hasher.strings(2).hash("term")));
+        // "Aa" and "BB" have the same String.hashCode, but not the same characters
+        assertThat(Hasher.strings(1).hash("Aa"), not(Hasher.strings(1).hash("BB")));
+        assertThat(Hasher.strings(1).hash(null), is(Hasher.seeded(1).hash(null)));
+    }
+
+    /**
+     * Any Hasher gives a correct map, even one that puts every key in the
+     * same sub-map.
+     */
+    @Test
+    public void testCustomHasher() {
+        Hasher constant = key -> 7;
+        MyHashMap<String, Integer> map = new MyHashMap<>(constant);
+        for (int i = 0; i < 1000; i++) {
+            map.put("k" + i, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(map.get("k" + i), is(i));
+        }
+        assertThat(map.stats().getMaxChainLength(), is(1000));
+    }
+}
@@ -5,8 +5,14 @@ import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
@@ -93,6 +99,41 @@ public class MyArrayListTest {
         assertThat(mylist.get(5), is(3));
     }
 
+    /**
+     * Test method for {@link MyArrayList#addAll(int, java.util.Collection)}.
+     */
+    @Test
+    public void testAddAllIntCollection() {
+        mylist.addAll(1, Arrays.asList(7, 8));
+        assertThat(mylist.toArray(), is(new Object[]{1, 7, 8, 2, 3}));
+
+        mylist.addAll(0, list);
+        mylist.addAll(mylist.size(), list);
+        assertThat(mylist.toArray(), is(new Object[]{1, 2, 3, 1, 7, 8, 2, 3, 1, 2, 3}));
+
+        assertThat(mylist.addAll(2, new ArrayList<Integer>()), equalTo(false));
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.addAll(12, list);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyArrayList#ensureCapacity(int)}.
+     */
+    @Test
+    public void testEnsureCapacity() {
+        MyArrayList<Integer> mal = new MyArrayList<>();
+        mal.ensureCapacity(1000);
+        for (int i = 0; i < 1000; i++) {
+            mal.add(i);
+        }
+        assertThat(mal.size(), is(1000));
+        assertThat(mal.get(999), is(999));
+    }
+
     /**
      * Test method for {@link MyArrayList#clear()}.
      */
@@ -173,6 +214,55 @@ public class MyArrayListTest {
         assertThat(iter.hasNext(), equalTo(false));
     }
 
+    /**
+     * Test method for {@link Iterator#remove()} on {@link MyArrayList#iterator()}.
+     */
+    @Test
+    public void testIteratorRemove() {
+        mylist.add(4);
+        Iterator<Integer> iter = mylist.iterator();
+        while (iter.hasNext()) {
+            if (iter.next() % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertThat(mylist.toArray(), is(new Object[]{1, 3}));
+    }
+
+    /**
+     * Test method for {@link MyArrayList#iterator()}.
+     */
+    @Test
+    public void testIteratorFailFast() {
+        final Iterator<Integer> iter = mylist.iterator();
+        iter.next();
+        mylist.add(4);
+        assertThrows(ConcurrentModificationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                iter.next();
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyArrayList#listIterator(int)}.
+     */
+    @Test
+    public void testListIterator() {
+        ListIterator<Integer> iter = mylist.listIterator(1);
+        assertThat(iter.previous(), is(1));
+        iter.set(5);
+        assertThat(iter.next(), is(5));
+        iter.add(6);
+        assertThat(iter.nextIndex(), is(2));
+        assertThat(iter.next(), is(2));
+        iter.remove();
+        assertThat(iter.hasPrevious(), equalTo(true));
+        assertThat(iter.previous(), is(6));
+        assertThat(mylist.toArray(), is(new Object[]{5, 6, 3}));
+    }
+
     /**
      * Test method for {@link MyArrayList#lastIndexOf(Object)}.
      */
@@ -231,6 +321,109 @@ public class MyArrayListTest {
         assertThat(mylist.size(), is(0));
     }
 
+    /**
+     * Test method for {@link MyArrayList#removeAll(java.util.Collection)}.
+     */
+    @Test
+    public void testRemoveAllDuplicates() {
+        mylist.addAll(list);
+        boolean flag = mylist.removeAll(Arrays.asList(2, 4));
+        assertThat(flag, equalTo(true));
+        assertThat(mylist.toArray(), is(new Object[]{1, 3, 1, 3}));
+
+        flag = mylist.removeAll(Arrays.asList(4));
+        assertThat(flag, equalTo(false));
+    }
+
+    /**
+     * Test method for {@link MyArrayList#retainAll(java.util.Collection)}.
+     */
+    @Test
+    public void testRetainAll() {
+        mylist.addAll(list);
+        boolean flag = mylist.retainAll(Arrays.asList(1, 3));
+        assertThat(flag, equalTo(true));
+        assertThat(mylist.toArray(), is(new Object[]{1, 3, 1, 3}));
+
+        flag = mylist.retainAll(Arrays.asList(1, 3));
+        assertThat(flag, equalTo(false));
+    }
+
+    /**
+     * Test method for {@link MyArrayList#removeIf(Predicate)}.
+     */
+    @Test
+    public void testRemoveIf() {
+        mylist.add(4);
+        boolean flag = mylist.removeIf(new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer element) {
+                return element % 2 == 1;
+            }
+        });
+        assertThat(flag, equalTo(true));
+        assertThat(mylist.toArray(), is(new Object[]{2, 4}));
+    }
+
+    /**
+     * If the filter throws partway through, no element is lost or repeated.
+     */
+    @Test
+    public void testRemoveIfThrows() {
+        for (int i = 4; i <= 8; i++) {
+            mylist.add(i);
+        }
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.removeIf(new Predicate<Integer>() {
+                    @Override
+                    public boolean test(Integer element) {
+                        if (element == 5) {
+                            throw new IllegalStateException();
+                        }
+                        return element % 2 == 1;
+                    }
+                });
+            }
+        });
+        assertThat(mylist.toArray(), is(new Object[]{2, 4, 5, 6, 7, 8}));
+        assertThat(mylist.size(), is(6));
+    }
+
+    /**
+     * A collection whose contains throws, like List.of with a null, leaves
+     * the list whole.
+     */
+    @Test
+    public void testRemoveAllThrows() {
+        mylist.add(null);
+        mylist.add(4);
+        assertThrows(NullPointerException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.removeAll(List.of(2));
+            }
+        });
+        assertThat(mylist.toArray(), is(new Object[]{1, 3, null, 4}));
+        assertThat(mylist.size(), is(4));
+    }
+
+    /**
+     * Test method for {@link MyArrayList#removeRange(int, int)}.
+     */
+    @Test
+    public void testRemoveRange() {
+        MyArrayList<Integer> mal = new MyArrayList<>();
+        mal.addAll(list);
+        mal.addAll(list);
+        mal.removeRange(1, 4);
+        assertThat(mal.toArray(), is(new Object[]{1, 2, 3}));
+
+        mal.removeRange(1, 1);
+        assertThat(mal.size(), is(3));
+    }
+
     /**
      * Test method for {@link MyArrayList#set(int, Object)}.
      */
@@ -286,6 +479,39 @@ public class MyArrayListTest {
         assertThat(sub.get(1), is(3));
     }
 
+    /**
+     * Test method for {@link MyArrayList#subList(int, int)}.
+     */
+    @Test
+    public void testSubListView() {
+        mylist.addAll(list);
+        List<Integer> sub = mylist.subList(1, 4);
+        sub.set(0, 9);
+        assertThat(mylist.get(1), is(9));
+
+        sub.add(0);
+        assertThat(mylist.toArray(), is(new Object[]{1, 9, 3, 1, 0, 2, 3}));
+
+        sub.clear();
+        assertThat(mylist.toArray(), is(new Object[]{1, 2, 3}));
+        assertThat(mylist.subList(0, 3).size(), is(3));
+    }
+
+    /**
+     * Test method for {@link MyArrayList#subList(int, int)}.
+     */
+    @Test
+    public void testSubListFailFast() {
+        final List<Integer> sub = mylist.subList(0, 2);
+        mylist.add(4);
+        assertThrows(ConcurrentModificationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                sub.get(0);
+            }
+        });
+    }
+
     /**
      * Test method for {@link MyArrayList#toArray()}.
      */
@@ -295,4 +521,31 @@ public class MyArrayListTest {
         assertThat((Integer) array[0], is(1));
     }
 
+    /**
+     * Test method for {@link MyArrayList#spliterator()}.
+     */
+    @Test
+    public void testSpliterator() {
+        for (int i = 4; i <= 10000; i++) {
+            mylist.add(i);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i <= 10000; i++) {
+            expected.add(i);
+        }
+        Spliterator<Integer> rest = mylist.spliterator();
+        Spliterator<Integer> prefix = rest.trySplit();
+        assertThat(prefix.estimateSize() + rest.estimateSize(), is(10000L));
+
+        // the prefix comes first, and together they cover the list once
+        List<Integer> seen = new ArrayList<>();
+        prefix.forEachRemaining(seen::add);
+        rest.forEachRemaining(seen::add);
+        assertThat(seen, is(expected));
+
+        long sum = mylist.parallelStream().mapToLong(Integer::longValue).sum();
+        assertThat(sum, is(10000L * 10001 / 2));
+        assertThat(mylist.parallelStream().collect(Collectors.toList()), is(expected));
+    }
+
 }
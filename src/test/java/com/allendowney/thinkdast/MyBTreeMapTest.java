@@ -0,0 +1,238 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+public class MyBTreeMapTest {
+
+    private MyBTreeMap<String, Integer> map;
+
+    @Before
+    public void setUp() {
+        // small nodes, so a few keys make a tree of several levels
+        map = new MyBTreeMap<>(4);
+        for (int i = 1; i <= 20; i++) {
+            map.put(String.format("%02d", i), i);
+        }
+    }
+
+    @Test
+    public void testGet() {
+        assertThat(map.get("01"), is(1));
+        assertThat(map.get("13"), is(13));
+        assertThat(map.get("20"), is(20));
+        assertThat(map.get("21"), nullValue());
+        assertThat(map.containsKey("07"), is(true));
+        assertThat(map.containsKey("00"), is(false));
+        assertThat(map.containsValue(7), is(true));
+        assertThat(map.containsValue(21), is(false));
+        assertThat(map.height() > 2, is(true));
+    }
+
+    @Test
+    public void testPut() {
+        assertThat(map.put("05", 55), is(5));
+        assertThat(map.put("00", 0), nullValue());
+        assertThat(map.size(), is(21));
+        assertThat(map.get("05"), is(55));
+        assertThat(map.firstKey(), is("00"));
+        assertThat(map.lastKey(), is("20"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullKey() {
+        map.put(null, 0);
+    }
+
+    @Test
+    public void testRemove() {
+        for (int i = 1; i <= 20; i += 2) {
+            assertThat(map.remove(String.format("%02d", i)), is(i));
+        }
+        assertThat(map.remove("01"), nullValue());
+        assertThat(map.size(), is(10));
+        assertThat(map.firstKey(), is("02"));
+        for (int i = 2; i <= 20; i += 2) {
+            assertThat(map.remove(String.format("%02d", i)), is(i));
+        }
+        assertThat(map.isEmpty(), is(true));
+        assertThat(map.height(), is(1));
+        assertThat(map.keySet().iterator().hasNext(), is(false));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testFirstKeyEmpty() {
+        map.clear();
+        map.firstKey();
+    }
+
+    @Test
+    public void testViews() {
+        map.put("21", 1);
+        List<String> keys = new ArrayList<>(map.keySet());
+        assertThat(keys.size(), is(21));
+        assertThat(keys.get(0), is("01"));
+        assertThat(keys.get(20), is("21"));
+        assertThat(Collections.frequency(map.values(), 1), is(2));
+        assertThat(map.entrySet().contains(new AbstractMap.SimpleEntry<>("03", 3)), is(true));
+
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            int value = entry.getValue();
+            assertThat(entry.setValue(value * 10), is(value));
+        }
+        assertThat(map.get("03"), is(30));
+    }
+
+    /**
+     * An entry keeps working after the tree changes shape, and setValue
+     * doesn't put back a key that was removed.
+     */
+    @Test
+    public void testEntryAfterChanges() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(map.entrySet());
+        for (int i = 21; i <= 40; i++) {
+            map.put(String.format("%02d", i), i);
+        }
+        map.remove("02");
+        Map.Entry<String, Integer> entry = entries.get(2);
+        assertThat(entry.getKey(), is("03"));
+        assertThat(entry.setValue(33), is(3));
+        assertThat(map.get("03"), is(33));
+        assertThat(entry, is((Map.Entry<String, Integer>) new AbstractMap.SimpleEntry<>("03", 33)));
+
+        final Map.Entry<String, Integer> removed = entries.get(1);
+        assertThat(removed.getValue(), nullValue());
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                removed.setValue(2);
+            }
+        });
+        assertThat(map.containsKey("02"), is(false));
+        assertThat(map.size(), is(39));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        Iterator<Integer> it = map.values().iterator();
+        List<Integer> seen = new ArrayList<>();
+        while (it.hasNext()) {
+            int value = it.next();
+            seen.add(value);
+            if (value % 3 != 0) {
+                it.remove();
+            }
+        }
+        assertThat(seen.size(), is(20));
+        assertThat(new ArrayList<>(map.values()), contains(3, 6, 9, 12, 15, 18));
+    }
+
+    @Test
+    public void testRange() {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : map.range("05", "09")) {
+            keys.add(entry.getKey());
+        }
+        assertThat(keys, contains("05", "06", "07", "08"));
+
+        Iterator<Map.Entry<String, Integer>> it = map.range("045", "10").iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertThat(map.size(), is(15));
+        assertThat(map.containsKey("04"), is(true));
+        assertThat(map.containsKey("09"), is(false));
+        assertThat(map.containsKey("10"), is(true));
+    }
+
+    /**
+     * Random puts and removes give the same results as TreeMap, with small
+     * nodes that split and merge often and with the default size.
+     */
+    @Test
+    public void testAgainstTreeMap() {
+        for (int maxKeys : new int[]{4, 5, MyBTreeMap.DEFAULT_MAX_KEYS}) {
+            MyBTreeMap<Integer, Integer> mine = new MyBTreeMap<>(maxKeys);
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            Random random = new Random(maxKeys);
+            for (int i = 0; i < 50000; i++) {
+                int key = random.nextInt(3000);
+                if (random.nextInt(5) < 2) {
+                    assertThat(mine.remove(key), is(expected.remove(key)));
+                } else {
+                    assertThat(mine.put(key, i), is(expected.put(key, i)));
+                }
+                assertThat(mine.size(), is(expected.size()));
+            }
+            assertThat(new ArrayList<>(mine.entrySet()), is(new ArrayList<>(expected.entrySet())));
+            for (int i = 0; i < 100; i++) {
+                int from = random.nextInt(3000);
+                int to = from + random.nextInt(200);
+                List<Map.Entry<Integer, Integer>> range = new ArrayList<>();
+                mine.range(from, to).forEach(range::add);
+                assertThat(range, is(new ArrayList<>(expected.subMap(from, to).entrySet())));
+            }
+        }
+    }
+
+    @Test
+    public void testFromSorted() {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 100000; i++) {
+            expected.put(i * 2, i);
+        }
+        MyBTreeMap<Integer, Integer> mine = MyBTreeMap.fromSorted(expected.entrySet().iterator());
+        assertThat(mine.size(), is(expected.size()));
+        assertThat(mine.height(), is(3));
+        assertThat(new ArrayList<>(mine.entrySet()), is(new ArrayList<>(expected.entrySet())));
+        assertThat(mine.get(2468), is(1234));
+        assertThat(mine.get(2469), nullValue());
+
+        // the bulk-loaded tree keeps working like any other
+        Random random = new Random(3);
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(200000);
+            if (random.nextBoolean()) {
+                assertThat(mine.remove(key), is(expected.remove(key)));
+            } else {
+                assertThat(mine.put(key, i), is(expected.put(key, i)));
+            }
+        }
+        assertThat(new ArrayList<>(mine.keySet()), is(new ArrayList<>(expected.keySet())));
+
+        // every size, to check the last leaf and the last inner nodes
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            MyBTreeMap<Integer, Integer> small = MyBTreeMap.fromSorted(4, entries.iterator());
+            assertThat(new ArrayList<>(small.entrySet()), is(entries));
+            for (int i = 0; i < n; i++) {
+                assertThat(small.remove(i), is(i));
+            }
+            assertThat(small.isEmpty(), is(true));
+            entries.add(Map.entry(n, n));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedOutOfOrder() {
+        MyBTreeMap.fromSorted(List.of(Map.entry(1, 1), Map.entry(3, 3), Map.entry(2, 2)).iterator());
+    }
+}
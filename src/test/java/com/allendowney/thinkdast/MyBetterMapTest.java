@@ -5,6 +5,9 @@ package com.allendowney.thinkdast;
 
 import org.junit.Before;
 
+import java.util.Map;
+import java.util.Spliterator;
+
 /**
  * @author downey
  *
@@ -23,4 +26,8 @@ public class MyBetterMapTest extends MyLinearMapTest {
         map.put(null, 0);
     }
 
+    @Override
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return ((MyBetterMap<String, Integer>) map).entrySpliterator();
+    }
 }
@@ -0,0 +1,245 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyConcurrentArrayQueueTest {
+
+    private MyConcurrentArrayQueue<Integer> queue;
+
+    @Before
+    public void setUp() {
+        queue = new MyConcurrentArrayQueue<>(6);
+    }
+
+    /**
+     * Test method for {@link MyConcurrentArrayQueue#MyConcurrentArrayQueue(int)}.
+     */
+    @Test
+    public void testCapacity() {
+        assertThat(queue.capacity(), is(8));
+        assertThat(new MyConcurrentArrayQueue<Integer>(1).capacity(), is(1));
+        assertThat(new MyConcurrentArrayQueue<Integer>(16).capacity(), is(16));
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new MyConcurrentArrayQueue<Integer>(0);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyConcurrentArrayQueue#offer(Object)} and {@link MyConcurrentArrayQueue#poll()}.
+     */
+    @Test
+    public void testOfferPoll() {
+        assertThat(queue.isEmpty(), equalTo(true));
+        assertThat(queue.poll(), nullValue());
+        assertThat(queue.peek(), nullValue());
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(queue.offer(i), equalTo(true));
+        }
+        assertThat(queue.size(), is(8));
+        assertThat(queue.offer(8), equalTo(false));
+        assertThat(queue.peek(), is(0));
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(queue.poll(), is(i));
+        }
+        assertThat(queue.poll(), nullValue());
+        assertThat(queue.isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Positions keep increasing while slots are reused.
+     */
+    @Test
+    public void testWrapAround() {
+        for (int i = 0; i < 1000; i++) {
+            assertThat(queue.offer(i), equalTo(true));
+            assertThat(queue.offer(-i), equalTo(true));
+            assertThat(queue.poll(), is(i));
+            assertThat(queue.poll(), is(-i));
+        }
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test
+    public void testNull() {
+        assertThrows(NullPointerException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                queue.offer(null);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyConcurrentArrayQueue#drainTo(java.util.Collection, int)}.
+     */
+    @Test
+    public void testDrainTo() {
+        for (int i = 0; i < 3; i++) {
+            queue.offer(-1);
+            queue.poll();
+        }
+        for (int i = 0; i < 7; i++) {
+            queue.offer(i);
+        }
+        List<Integer> list = new ArrayList<>();
+        assertThat(queue.drainTo(list, 3), is(3));
+        assertThat(list, is(Arrays.asList(0, 1, 2)));
+        assertThat(queue.drainTo(list), is(4));
+        assertThat(list, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6)));
+        assertThat(queue.drainTo(list), is(0));
+        assertThat(queue.isEmpty(), equalTo(true));
+
+        // the drained slots can be used again
+        for (int i = 0; i < 8; i++) {
+            assertThat(queue.offer(i), equalTo(true));
+        }
+    }
+
+    /**
+     * If the collection throws, the claimed slots are still freed.
+     */
+    @Test
+    public void testDrainToThrows() {
+        for (int i = 0; i < 8; i++) {
+            queue.offer(i);
+        }
+        final List<Integer> full = Collections.unmodifiableList(new ArrayList<Integer>());
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                queue.drainTo(full, 3);
+            }
+        });
+        assertThat(queue.size(), is(5));
+        for (int i = 0; i < 3; i++) {
+            assertThat(queue.offer(i), equalTo(true));
+        }
+        assertThat(queue.offer(3), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link MyConcurrentArrayQueue#iterator()}.
+     */
+    @Test
+    public void testIterator() {
+        for (int i = 0; i < 5; i++) {
+            queue.offer(-1);
+            queue.poll();
+        }
+        for (int i = 0; i < 6; i++) {
+            queue.offer(i);
+        }
+        queue.poll();
+        assertThat(queue.toString(), is("[1, 2, 3, 4, 5]"));
+        assertThat(queue.contains(3), equalTo(true));
+        assertThat(queue.contains(0), equalTo(false));
+        assertThat(queue.toArray(), is(new Object[]{1, 2, 3, 4, 5}));
+        assertThat(queue.containsAll(Arrays.asList(1, 5)), equalTo(true));
+
+        // the iterator has already read 2, but skips 3 once it is polled
+        Iterator<Integer> it = queue.iterator();
+        assertThat(it.next(), is(1));
+        queue.poll();
+        queue.poll();
+        queue.poll();
+        assertThat(it.next(), is(2));
+        queue.offer(6);
+        List<Integer> rest = new ArrayList<>();
+        while (it.hasNext()) {
+            rest.add(it.next());
+        }
+        assertThat(rest, is(Arrays.asList(4, 5)));
+    }
+
+    /**
+     * Several producers and consumers; every element comes out exactly once.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50000;
+        final int total = producers * perProducer;
+        final MyConcurrentArrayQueue<Integer> shared = new MyConcurrentArrayQueue<>(64);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        final AtomicLong consumed = new AtomicLong();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int first = p * perProducer;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = first; i < first + perProducer; i++) {
+                        while (!shared.offer(i)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < consumers; c++) {
+            final boolean batch = c % 2 == 0;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    List<Integer> buffer = new ArrayList<>();
+                    while (consumed.get() < total) {
+                        if (batch) {
+                            shared.drainTo(buffer, 16);
+                        } else {
+                            Integer item = shared.poll();
+                            if (item != null) {
+                                buffer.add(item);
+                            }
+                        }
+                        if (buffer.isEmpty()) {
+                            Thread.yield();
+                            continue;
+                        }
+                        for (Integer item : buffer) {
+                            seen.incrementAndGet(item);
+                        }
+                        consumed.addAndGet(buffer.size());
+                        buffer.clear();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(consumed.get(), is((long) total));
+        for (int i = 0; i < total; i++) {
+            assertThat(seen.get(i), is(1));
+        }
+        assertThat(shared.isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,170 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+public class MyConcurrentHashMapTest extends MyLinearMapTest {
+
+    @Before
+    public void setUp() {
+        map = new MyConcurrentHashMap<>();
+        map.put("One", 1);
+        map.put("Two", 2);
+        map.put("Three", 3);
+        map.put(null, 0);
+    }
+
+    @Override
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return map.entrySet().spliterator();
+    }
+
+    /**
+     * Test method for {@link MyConcurrentHashMap#MyConcurrentHashMap(int)}.
+     */
+    @Test
+    public void testStripes() {
+        assertThat(new MyConcurrentHashMap<String, Integer>().stripeCount(), is(16));
+        assertThat(new MyConcurrentHashMap<String, Integer>(5).stripeCount(), is(8));
+        assertThat(new MyConcurrentHashMap<String, Integer>(1).stripeCount(), is(1));
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new MyConcurrentHashMap<String, Integer>(0);
+            }
+        });
+    }
+
+    /**
+     * The entries are immutable snapshots, so setValue throws and the map
+     * keeps its value.
+     */
+    @Test
+    @Override
+    public void testEntrySetValue() {
+        final Map.Entry<String, Integer> entry = map.entrySet().iterator().next();
+        final Integer value = entry.getValue();
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                entry.setValue(value + 1);
+            }
+        });
+        assertThat(map.get(entry.getKey()), is(value));
+    }
+
+    @Test
+    public void testNullValue() {
+        assertThrows(NullPointerException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                map.put("Four", null);
+            }
+        });
+    }
+
+    @Test
+    public void testAtomicOperations() {
+        assertThat(map.putIfAbsent("One", 11), is(1));
+        assertThat(map.putIfAbsent("Four", 4), nullValue());
+        assertThat(map.get("Four"), is(4));
+
+        assertThat(map.remove("Four", 5), is(false));
+        assertThat(map.remove("Four", 4), is(true));
+        assertThat(map.containsKey("Four"), is(false));
+
+        assertThat(map.replace("One", 2, 12), is(false));
+        assertThat(map.replace("One", 1, 11), is(true));
+        assertThat(map.replace("Four", 4), nullValue());
+        assertThat(map.containsKey("Four"), is(false));
+
+        assertThat(map.merge("One", 1, Integer::sum), is(12));
+        assertThat(map.merge("Five", 5, Integer::sum), is(5));
+        assertThat(map.computeIfAbsent("Six", k -> 6), is(6));
+        assertThat(map.computeIfAbsent("Six", k -> 60), is(6));
+        assertThat(map.computeIfPresent("Six", (k, v) -> null), nullValue());
+        assertThat(map.containsKey("Six"), is(false));
+        assertThat(map.compute("Two", (k, v) -> v * 10), is(20));
+        assertThat(map.compute("Two", (k, v) -> null), nullValue());
+        assertThat(map.size(), is(4));
+    }
+
+    /**
+     * Random operations give the same results as HashMap, through many
+     * resizes of every stripe.
+     */
+    @Test
+    public void testRandomOperations() {
+        MyConcurrentHashMap<Integer, Integer> mine = new MyConcurrentHashMap<>(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            Integer key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertThat(mine.remove(key), is(expected.remove(key)));
+            } else {
+                assertThat(mine.put(key, i), is(expected.put(key, i)));
+            }
+        }
+        assertThat(mine.size(), is(expected.size()));
+        assertThat(mine.entrySet(), is(expected.entrySet()));
+    }
+
+    /**
+     * Threads counting the same words with merge lose no updates, while
+     * another thread reads.
+     */
+    @Test
+    public void testConcurrentMerge() throws InterruptedException {
+        final MyConcurrentHashMap<Integer, Integer> counts = new MyConcurrentHashMap<>(4);
+        final int threads = 4;
+        final int perThread = 20000;
+        final int words = 1000;
+        final AtomicInteger misses = new AtomicInteger();
+        Thread[] workers = new Thread[threads + 1];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        counts.merge(i % words, 1, Integer::sum);
+                    }
+                }
+            };
+        }
+        workers[threads] = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < perThread; i++) {
+                    Integer count = counts.get(i % words);
+                    if (count != null && count < 1) {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        };
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertThat(misses.get(), is(0));
+        assertThat(counts.size(), is(words));
+        for (int word = 0; word < words; word++) {
+            assertThat(counts.get(word), is(threads * perThread / words));
+        }
+    }
+}
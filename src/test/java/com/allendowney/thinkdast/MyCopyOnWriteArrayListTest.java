@@ -0,0 +1,207 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyCopyOnWriteArrayListTest {
+
+    private MyCopyOnWriteArrayList<Integer> list;
+
+    @Before
+    public void setUp() {
+        list = new MyCopyOnWriteArrayList<>(Arrays.asList(1, 2, 3));
+    }
+
+    /**
+     * The List methods behave like any other List.
+     */
+    @Test
+    public void testListMethods() {
+        list.add(4);
+        list.add(0, 0);
+        assertThat(list, is(Arrays.asList(0, 1, 2, 3, 4)));
+        assertThat(list.set(2, 20), is(2));
+        assertThat(list.remove(0), is(0));
+        assertThat(list.remove(Integer.valueOf(20)), equalTo(true));
+        assertThat(list.remove(Integer.valueOf(20)), equalTo(false));
+        assertThat(list, is(Arrays.asList(1, 3, 4)));
+
+        assertThat(list.addAll(1, Arrays.asList(7, 8)), equalTo(true));
+        assertThat(list.addAll(list), equalTo(true));
+        assertThat(list, is(Arrays.asList(1, 7, 8, 3, 4, 1, 7, 8, 3, 4)));
+        assertThat(list.indexOf(7), is(1));
+        assertThat(list.lastIndexOf(7), is(6));
+        assertThat(list.contains(8), equalTo(true));
+
+        assertThat(list.removeAll(Arrays.asList(7, 8)), equalTo(true));
+        assertThat(list.retainAll(Arrays.asList(1, 3)), equalTo(true));
+        assertThat(list.retainAll(Arrays.asList(1, 3)), equalTo(false));
+        assertThat(list.toArray(new Integer[0]), is(new Integer[]{1, 3, 1, 3}));
+
+        list.clear();
+        assertThat(list.isEmpty(), equalTo(true));
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                list.get(0);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyCopyOnWriteArrayList#addIfAbsent(Object)}.
+     */
+    @Test
+    public void testAddIfAbsent() {
+        assertThat(list.addIfAbsent(2), equalTo(false));
+        assertThat(list.addIfAbsent(4), equalTo(true));
+        assertThat(list.addIfAbsent(null), equalTo(true));
+        assertThat(list.addIfAbsent(null), equalTo(false));
+        assertThat(list.size(), is(5));
+        assertThat(list.get(4), nullValue());
+    }
+
+    /**
+     * An iterator keeps seeing the version it started with.
+     */
+    @Test
+    public void testIteratorSnapshot() {
+        Iterator<Integer> iter = list.iterator();
+        List<Integer> before = list.snapshot();
+        list.add(4);
+        list.set(0, 10);
+
+        List<Integer> seen = new ArrayList<>();
+        while (iter.hasNext()) {
+            seen.add(iter.next());
+        }
+        assertThat(seen, is(Arrays.asList(1, 2, 3)));
+        assertThat(before, is(Arrays.asList(1, 2, 3)));
+        assertThat(list, is(Arrays.asList(10, 2, 3, 4)));
+
+        final Iterator<Integer> iter2 = list.iterator();
+        iter2.next();
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                iter2.remove();
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyCopyOnWriteArrayList#batch(MyCopyOnWriteArrayList.Batch)}.
+     */
+    @Test
+    public void testBatch() {
+        List<Integer> before = list.snapshot();
+        list.batch(new MyCopyOnWriteArrayList.Batch<Integer>() {
+            @Override
+            public void apply(List<Integer> copy) {
+                for (int i = 4; i <= 100; i++) {
+                    copy.add(i);
+                }
+                copy.remove(0);
+                copy.set(0, -2);
+            }
+        });
+        assertThat(before, is(Arrays.asList(1, 2, 3)));
+        assertThat(list.size(), is(99));
+        assertThat(list.get(0), is(-2));
+        assertThat(list.get(98), is(100));
+    }
+
+    /**
+     * If a batch fails, none of its changes are published.
+     */
+    @Test
+    public void testBatchFailure() {
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                list.batch(new MyCopyOnWriteArrayList.Batch<Integer>() {
+                    @Override
+                    public void apply(List<Integer> copy) {
+                        copy.add(4);
+                        copy.clear();
+                        throw new IllegalStateException();
+                    }
+                });
+            }
+        });
+        assertThat(list, is(Arrays.asList(1, 2, 3)));
+    }
+
+    /**
+     * Readers iterate while a writer appends; every snapshot a reader sees is
+     * a consistent prefix 1, 2, 3, ..., n.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConcurrentReaders() throws InterruptedException {
+        final int n = 2000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final MyCopyOnWriteArrayList<Integer> shared = new MyCopyOnWriteArrayList<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    int last = 0;
+                    while (last < n && failure.get() == null) {
+                        int expected = 1;
+                        for (Integer value : shared) {
+                            if (value != expected) {
+                                failure.compareAndSet(null, new AssertionError(value + " != " + expected));
+                                return;
+                            }
+                            expected++;
+                        }
+                        last = expected - 1;
+                    }
+                }
+            });
+        }
+        threads.add(new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= n; i++) {
+                    if (i % 2 == 0) {
+                        shared.add(i);
+                    } else {
+                        final int value = i;
+                        shared.batch(new MyCopyOnWriteArrayList.Batch<Integer>() {
+                            @Override
+                            public void apply(List<Integer> copy) {
+                                copy.add(value);
+                            }
+                        });
+                    }
+                }
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(failure.get(), nullValue());
+        assertThat(shared.size(), is(n));
+    }
+}
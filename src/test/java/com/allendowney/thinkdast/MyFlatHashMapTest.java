@@ -0,0 +1,116 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class MyFlatHashMapTest extends MyLinearMapTest {
+
+    @Before
+    public void setUp() {
+        map = new MyFlatHashMap<>();
+        map.put("One", 1);
+        map.put("Two", 2);
+        map.put("Three", 3);
+        map.put(null, 0);
+    }
+
+    @Override
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return map.entrySet().spliterator();
+    }
+
+    /**
+     * Random puts and removes give the same results as HashMap.
+     */
+    @Test
+    public void testRandomOperations() {
+        MyFlatHashMap<Integer, Integer> mine = new MyFlatHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 100000; i++) {
+            Integer key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertThat(mine.remove(key), is(expected.remove(key)));
+            } else {
+                assertThat(mine.put(key, i), is(expected.put(key, i)));
+            }
+        }
+        assertThat(mine.size(), is(expected.size()));
+        for (int key = 0; key < 5000; key++) {
+            assertThat(mine.get(key), is(expected.get(key)));
+        }
+        assertThat(new HashMap<>(mine), is(expected));
+    }
+
+    /**
+     * Keys that all have the same hash code form one long cluster, and
+     * removing from the middle of it keeps the rest reachable.
+     */
+    @Test
+    public void testCollidingKeys() {
+        MyFlatHashMap<String, Integer> mine = new MyFlatHashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int b = 0; b < 6; b++) {
+                sb.append(((i >>> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            keys.add(sb.toString());
+            mine.put(sb.toString(), i);
+        }
+        for (int i = 0; i < 64; i += 2) {
+            assertThat(mine.remove(keys.get(i)), is(i));
+        }
+        assertThat(mine.size(), is(32));
+        for (int i = 0; i < 64; i++) {
+            assertThat(mine.get(keys.get(i)), is(i % 2 == 0 ? null : i));
+        }
+    }
+
+    /**
+     * The table grows as entries are added, and stays short in probe length.
+     */
+    @Test
+    public void testResize() {
+        MyFlatHashMap<Integer, Integer> mine = new MyFlatHashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            mine.put(i, i);
+        }
+        assertThat(mine.capacity(), is(16384));
+        assertThat(mine.maxProbeDistance(), lessThan(32));
+
+        MyFlatHashMap<Integer, Integer> presized = new MyFlatHashMap<>(10000);
+        int capacity = presized.capacity();
+        for (int i = 0; i < 10000; i++) {
+            presized.put(i, i);
+        }
+        assertThat(presized.capacity(), is(capacity));
+    }
+
+    /**
+     * Test method for {@link MyFlatHashMap#entrySet()}.
+     */
+    @Test
+    public void testEntrySet() {
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+            total += entry.getValue();
+        }
+        assertThat(total, is(60));
+        assertThat(map.get("Three"), is(30));
+        assertThat(map.keySet().contains(null), is(true));
+        assertThat(map.values().size(), is(4));
+    }
+}
@@ -4,6 +4,23 @@
 package com.allendowney.thinkdast;
 
 import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
 
 /**
  * @author downey
@@ -20,4 +37,217 @@ public class MyHashMapTest extends MyLinearMapTest {
         map.put(null, 0);
     }
 
+    @Override
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return ((MyBetterMap<String, Integer>) map).entrySpliterator();
+    }
+
+    /**
+     * While a rehash is in progress, every operation moves a few of the old
+     * maps, and every key can still be found.
+     */
+    @Test
+    public void testIncrementalRehash() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>();
+        int i = 0;
+        while (hashMap.maps.size() < 64 || !hashMap.isRehashing()) {
+            hashMap.put(i, i);
+            i++;
+        }
+        // the put that started the rehash did not move anything
+        assertThat(hashMap.migrated, is(0));
+        assertThat(hashMap.oldMaps.size(), is(hashMap.maps.size() / 2));
+
+        hashMap.remove(0);
+        assertThat(hashMap.migrated, is(MyHashMap.MIGRATE_STEP));
+        assertThat(hashMap.size(), is(i - 1));
+        for (int key = 1; key < i; key++) {
+            assertThat(hashMap.get(key), is(key));
+        }
+        assertThat(hashMap.isRehashing(), is(false));
+        assertThat(hashMap.get(0), nullValue());
+    }
+
+    /**
+     * Operations that visit every entry finish the rehash first.
+     */
+    @Test
+    public void testFinishRehash() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>();
+        int i = 0;
+        while (hashMap.maps.size() < 64 || !hashMap.isRehashing()) {
+            hashMap.put(i, i);
+            i++;
+        }
+        // making a view doesn't move anything, iterating over it does
+        Set<Integer> keys = hashMap.keySet();
+        assertThat(keys.size(), is(i));
+        assertThat(hashMap.isRehashing(), is(true));
+        assertThat(new ArrayList<>(keys).size(), is(i));
+        assertThat(hashMap.isRehashing(), is(false));
+        assertThat(hashMap.size(), is(i));
+
+        hashMap.clear();
+        assertThat(hashMap.size(), is(0));
+        assertThat(hashMap.get(1), nullValue());
+    }
+
+    /**
+     * Sub-maps are made when a key first reaches them, not when the table is.
+     */
+    @Test
+    public void testLazyBuckets() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>(1 << 16);
+        assertThat(hashMap.maps.size(), is(1 << 16));
+        assertThat(Collections.frequency(hashMap.maps, null), is(1 << 16));
+        hashMap.put(1, 1);
+        assertThat(Collections.frequency(hashMap.maps, null), is((1 << 16) - 1));
+        assertThat(hashMap.get(1), is(1));
+        assertThat(hashMap.stats().getMaxChainLength(), is(1));
+        assertThat(new ArrayList<>(hashMap.keySet()), is(Collections.singletonList(1)));
+        hashMap.clear();
+        assertThat(hashMap.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>();
+        assertThat(hashMap.stats().isStatsEnabled(), is(false));
+        assertThat(hashMap.stats().getRehashCount(), is(0L));
+
+        hashMap.setStatsEnabled(true);
+        int n = 5000;
+        for (int i = 0; i < n; i++) {
+            hashMap.put(i, i);
+        }
+        HashMapStats stats = hashMap.stats();
+        assertThat(stats.getSize(), is(n));
+        assertThat(stats.getRehashCount() > 0, is(true));
+        assertThat(stats.getMaxRehashNanos() <= stats.getTotalRehashNanos(), is(true));
+        assertThat(stats.getLoadFactorHistory().length, is(n / MapStatsRecorder.SAMPLE_INTERVAL));
+
+        int[] histogram = stats.getChainLengthHistogram();
+        int chains = 0;
+        for (int count : histogram) {
+            chains += count;
+        }
+        assertThat(histogram.length, is(stats.getMaxChainLength() + 1));
+        assertThat(histogram[histogram.length - 1] > 0, is(true));
+        int expected = hashMap.maps.size()
+                + (hashMap.isRehashing() ? hashMap.oldMaps.size() - hashMap.migrated : 0);
+        assertThat(chains, is(expected));
+
+        ObjectName name = hashMap.registerStatsMBean("testStats");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertThat(server.getAttribute(name, "Size"), is((Object) n));
+            assertThat(server.getAttribute(name, "StatsEnabled"), is((Object) true));
+        } finally {
+            server.unregisterMBean(name);
+        }
+
+        hashMap.setStatsEnabled(false);
+        assertThat(hashMap.stats().getRehashCount(), is(0L));
+    }
+
+    @Test
+    public void testExpectedSize() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>(5000);
+        hashMap.setStatsEnabled(true);
+        int numMaps = hashMap.maps.size();
+        assertThat(numMaps, is(8192));
+        for (int i = 0; i < 5000; i++) {
+            hashMap.put(i, i);
+        }
+        assertThat(hashMap.stats().getRehashCount(), is(0L));
+        assertThat(hashMap.maps.size(), is(numMaps));
+
+        assertThat(new MyHashMap<Integer, Integer>(5000, 4.0).maps.size(), is(2048));
+        assertThat(new MyHashMap<Integer, Integer>(0).maps.size(), is(2));
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new MyHashMap<Integer, Integer>(-1);
+            }
+        });
+        assertThrows(IllegalArgumentException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                new MyHashMap<Integer, Integer>(10, 0.0);
+            }
+        });
+    }
+
+    @Test
+    public void testLoadFactor() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>(0, 4.0);
+        for (int i = 0; i < 4096; i++) {
+            hashMap.put(i, i);
+        }
+        hashMap.finishRehash();
+        assertThat(hashMap.maps.size(), is(1024));
+        assertThat(hashMap.getLoadFactor(), is(4.0));
+    }
+
+    @Test
+    public void testShrink() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            hashMap.put(i, i);
+        }
+        int peak = hashMap.maps.size();
+        for (int i = 0; i < 9990; i++) {
+            assertThat(hashMap.remove(i), is(i));
+        }
+        hashMap.finishRehash();
+        assertThat(hashMap.maps.size() < peak / 64, is(true));
+        assertThat(hashMap.size(), is(10));
+        for (int i = 9990; i < 10000; i++) {
+            assertThat(hashMap.get(i), is(i));
+        }
+
+        // a presized map doesn't shrink below its starting size
+        MyHashMap<Integer, Integer> presized = new MyHashMap<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            presized.put(i, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            presized.remove(i);
+        }
+        assertThat(presized.maps.size(), is(1024));
+    }
+
+    @Test
+    public void testTrimToSize() {
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>(100000);
+        for (int i = 0; i < 100; i++) {
+            hashMap.put(i, i);
+        }
+        hashMap.trimToSize();
+        assertThat(hashMap.isRehashing(), is(false));
+        assertThat(hashMap.maps.size(), is(128));
+        for (int i = 0; i < 100; i++) {
+            assertThat(hashMap.get(i), is(i));
+        }
+
+        hashMap.clear();
+        assertThat(hashMap.maps.size(), is(128));
+    }
+
+    @Test
+    public void testBulkLoad() {
+        Map<Integer, Integer> source = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            source.put(i, i);
+        }
+        MyHashMap<Integer, Integer> hashMap = new MyHashMap<>();
+        hashMap.setStatsEnabled(true);
+        hashMap.putAll(source);
+        assertThat(hashMap.stats().getRehashCount(), is(1L));
+        assertThat(hashMap.size(), is(50000));
+        assertThat(hashMap.get(49999), is(49999));
+
+        hashMap.ensureCapacity(10);
+        assertThat(hashMap.stats().getRehashCount(), is(1L));
+    }
 }
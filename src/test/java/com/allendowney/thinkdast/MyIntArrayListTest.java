@@ -0,0 +1,151 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyIntArrayListTest {
+    protected MyIntArrayList mylist;
+
+    @Before
+    public void setUp() {
+        mylist = new MyIntArrayList();
+        mylist.add(1);
+        mylist.add(2);
+        mylist.add(3);
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#add(int)}.
+     */
+    @Test
+    public void testAdd() {
+        for (int i = 4; i < 20; i++) {
+            mylist.add(i);
+        }
+        assertThat(mylist.size(), is(19));
+        assertThat(mylist.get(18), is(19));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#add(int, int)}.
+     */
+    @Test
+    public void testAddIntInt() {
+        mylist.add(1, 5);
+        assertThat(mylist.get(1), is(5));
+        assertThat(mylist.size(), is(4));
+
+        mylist.add(0, 6);
+        assertThat(mylist.get(0), is(6));
+
+        mylist.add(5, 7);
+        assertThat(mylist.get(5), is(7));
+        assertThat(mylist.toArray(), is(new int[]{6, 1, 5, 2, 3, 7}));
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.add(7, 0);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#get(int)}.
+     */
+    @Test
+    public void testGet() {
+        assertThat(mylist.get(1), is(2));
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.get(3);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#indexOf(int)}.
+     */
+    @Test
+    public void testIndexOf() {
+        mylist.add(2);
+        assertThat(mylist.indexOf(2), is(1));
+        assertThat(mylist.lastIndexOf(2), is(3));
+        assertThat(mylist.indexOf(4), is(-1));
+        assertThat(mylist.contains(3), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#remove(int)}.
+     */
+    @Test
+    public void testRemove() {
+        int val = mylist.remove(1);
+        assertThat(val, is(2));
+        assertThat(mylist.size(), is(2));
+        assertThat(mylist.get(1), is(3));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#removeValue(int)}.
+     */
+    @Test
+    public void testRemoveValue() {
+        assertThat(mylist.removeValue(1), equalTo(true));
+        assertThat(mylist.removeValue(5), equalTo(false));
+        assertThat(mylist.toArray(), is(new int[]{2, 3}));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#set(int, int)}.
+     */
+    @Test
+    public void testSet() {
+        int val = mylist.set(1, 5);
+        assertThat(val, is(2));
+        assertThat(mylist.get(1), is(5));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#sort()}.
+     */
+    @Test
+    public void testSort() {
+        mylist.add(0, 9);
+        mylist.add(-4);
+        mylist.sort();
+        assertThat(mylist.toArray(), is(new int[]{-4, 1, 2, 3, 9}));
+    }
+
+    /**
+     * Test method for {@link MyIntArrayList#clear()}.
+     */
+    @Test
+    public void testClear() {
+        mylist.clear();
+        assertThat(mylist.isEmpty(), equalTo(true));
+    }
+
+    /**
+     * The backing array is a plain int[] that at most doubles the element count.
+     */
+    @Test
+    public void testCapacity() {
+        MyIntArrayList ints = new MyIntArrayList();
+        for (int i = 0; i < 100000; i++) {
+            ints.add(i);
+            assertThat(ints.capacity() >= ints.size(), is(true));
+            assertThat(ints.capacity() <= Math.max(10, 2 * ints.size()), is(true));
+        }
+        assertThat(ints.get(99999), is(99999));
+        assertThat(ints.toArray().length, is(100000));
+    }
+}
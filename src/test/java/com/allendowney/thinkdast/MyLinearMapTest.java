@@ -3,10 +3,16 @@ package com.allendowney.thinkdast;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -145,4 +151,127 @@ public class MyLinearMapTest {
         assertThat(keySet.contains(0), is(true));
         assertThat(keySet.contains(4), is(false));
     }
+
+    /**
+     * Test method for {@link MyLinearMap#values()}.
+     */
+    @Test
+    public void testValuesKeepDuplicates() {
+        map.put("Uno", 1);
+        Collection<Integer> values = map.values();
+        assertThat(values.size(), is(5));
+        assertThat(Collections.frequency(values, 1), is(2));
+        assertThat(values.remove(1), is(true));
+        assertThat(map.size(), is(4));
+        assertThat(Collections.frequency(values, 1), is(1));
+    }
+
+    /**
+     * Test method for {@link MyLinearMap#keySet()}.
+     */
+    @Test
+    public void testKeySetIsLive() {
+        Set<String> keys = map.keySet();
+        map.put("Four", 4);
+        assertThat(keys.size(), is(5));
+        assertThat(keys.contains("Four"), is(true));
+        assertThat(keys.remove("One"), is(true));
+        assertThat(keys.remove("One"), is(false));
+        assertThat(map.containsKey("One"), is(false));
+        assertThat(map.size(), is(4));
+        keys.clear();
+        assertThat(map.isEmpty(), is(true));
+    }
+
+    /**
+     * Test method for {@link MyLinearMap#entrySet()}.
+     */
+    @Test
+    public void testEntrySet() {
+        Set<Map.Entry<String, Integer>> entries = map.entrySet();
+        assertThat(entries.size(), is(4));
+        assertThat(entries.contains(new AbstractMap.SimpleEntry<>("Two", 2)), is(true));
+        assertThat(entries.contains(new AbstractMap.SimpleEntry<>("Two", 3)), is(false));
+        assertThat(entries.contains(new AbstractMap.SimpleEntry<String, Integer>(null, 0)), is(true));
+        assertThat(entries.remove(new AbstractMap.SimpleEntry<>("Two", 3)), is(false));
+        assertThat(entries.remove(new AbstractMap.SimpleEntry<>("Two", 2)), is(true));
+        assertThat(map.containsKey("Two"), is(false));
+        assertThat(map.size(), is(3));
+    }
+
+    /**
+     * Setting the value of an entry in the entry set writes through to the
+     * map and returns the old value.
+     */
+    @Test
+    public void testEntrySetValue() {
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            if ("Two".equals(entry.getKey())) {
+                assertThat(entry.setValue(22), is(2));
+                assertThat(entry.getValue(), is(22));
+            }
+        }
+        assertThat(map.get("Two"), is(22));
+        assertThat(map.size(), is(4));
+    }
+
+    /**
+     * Removing through an iterator removes from the map, and the iterator
+     * still visits every entry once.
+     */
+    @Test
+    public void testIteratorRemove() {
+        for (int i = 0; i < 1000; i++) {
+            map.put("k" + i, i);
+        }
+        int visited = 0;
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> entry = it.next();
+            visited++;
+            if (entry.getValue() % 2 == 1) {
+                it.remove();
+            }
+        }
+        assertThat(visited, is(1004));
+        assertThat(map.size(), is(502));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(map.containsKey("k" + i), is(i % 2 == 0));
+        }
+        assertThat(map.get(null), is(0));
+
+        it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertThat(map.isEmpty(), is(true));
+    }
+
+    /**
+     * Returns the entry Spliterator of `map`, which is not part of the Map interface.
+     */
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return ((MyLinearMap<String, Integer>) map).entrySpliterator();
+    }
+
+    /**
+     * Test method for {@link MyLinearMap#entrySpliterator()}.
+     */
+    @Test
+    public void testEntrySpliterator() {
+        for (int i = 0; i < 1000; i++) {
+            map.put("k" + i, i);
+        }
+        long sum = StreamSupport.stream(entrySpliterator(), true)
+                .mapToLong(e -> e.getValue())
+                .sum();
+        assertThat(sum, is(999L * 1000 / 2 + 6));
+
+        Set<String> keys = StreamSupport.stream(entrySpliterator(), true)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        assertThat(keys, is(map.keySet()));
+        assertThat(StreamSupport.stream(entrySpliterator(), true).count(), is(1004L));
+    }
 }
@@ -1,8 +1,16 @@
 package com.allendowney.thinkdast;
 
 import org.junit.Before;
+import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
 
 
 /**
@@ -21,4 +29,64 @@ public class MyLinkedListTest extends MyArrayListTest {
         mylist.addAll(list);
     }
 
+    /**
+     * Test method for {@link MyLinkedList#get(int)} from both ends.
+     */
+    @Test
+    public void testGetBothEnds() {
+        for (int i = 4; i <= 10; i++) {
+            mylist.add(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertThat(mylist.get(i), is(i + 1));
+        }
+    }
+
+    /**
+     * Test method for the {@link Deque} methods of {@link MyLinkedList}.
+     */
+    @Test
+    public void testDeque() {
+        Deque<Integer> deque = (MyLinkedList<Integer>) mylist;
+        deque.addFirst(0);
+        deque.addLast(4);
+        assertThat(deque.peekFirst(), is(0));
+        assertThat(deque.peekLast(), is(4));
+        assertThat(deque.pollLast(), is(4));
+        assertThat(deque.pollFirst(), is(0));
+        assertThat(deque.pop(), is(1));
+        deque.push(9);
+        assertThat(mylist.toArray(), is(new Object[]{9, 2, 3}));
+
+        deque.clear();
+        assertThat(deque.pollFirst(), nullValue());
+        assertThat(deque.peekLast(), nullValue());
+    }
+
+    /**
+     * Test method for {@link MyLinkedList#descendingIterator()}.
+     */
+    @Test
+    public void testDescendingIterator() {
+        Iterator<Integer> iter = ((MyLinkedList<Integer>) mylist).descendingIterator();
+        assertThat(iter.next(), is(3));
+        iter.remove();
+        assertThat(iter.next(), is(2));
+        assertThat(iter.next(), is(1));
+        assertThat(mylist.toArray(), is(new Object[]{1, 2}));
+    }
+
+    /**
+     * Test method for {@link MyLinkedList#listIterator(int)} removing while going backward.
+     */
+    @Test
+    public void testListIteratorBackward() {
+        ListIterator<Integer> iter = mylist.listIterator(3);
+        assertThat(iter.previous(), is(3));
+        iter.remove();
+        assertThat(iter.previous(), is(2));
+        iter.add(7);
+        assertThat(iter.next(), is(2));
+        assertThat(mylist.toArray(), is(new Object[]{1, 7, 2}));
+    }
 }
@@ -0,0 +1,213 @@
+package com.allendowney.thinkdast;
+
+import org.jsoup.select.Elements;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThrows;
+
+public class MyLockFreeHashMapTest extends MyLinearMapTest {
+
+    private static final int THREADS = 4;
+
+    @Before
+    public void setUp() {
+        map = new MyLockFreeHashMap<>();
+        map.put("One", 1);
+        map.put("Two", 2);
+        map.put("Three", 3);
+        map.put(null, 0);
+    }
+
+    @Override
+    protected Spliterator<Map.Entry<String, Integer>> entrySpliterator() {
+        return map.entrySet().spliterator();
+    }
+
+    /**
+     * The entries are immutable snapshots, so setValue throws and the map
+     * keeps its value.
+     */
+    @Test
+    @Override
+    public void testEntrySetValue() {
+        final Map.Entry<String, Integer> entry = map.entrySet().iterator().next();
+        final Integer value = entry.getValue();
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                entry.setValue(value + 1);
+            }
+        });
+        assertThat(map.get(entry.getKey()), is(value));
+    }
+
+    @Test
+    public void testNullValue() {
+        assertThrows(NullPointerException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                map.put("Four", null);
+            }
+        });
+    }
+
+    @Test
+    public void testAtomicOperations() {
+        assertThat(map.putIfAbsent("One", 11), is(1));
+        assertThat(map.putIfAbsent("Four", 4), nullValue());
+        assertThat(map.remove("Four", 5), is(false));
+        assertThat(map.remove("Four", 4), is(true));
+        assertThat(map.replace("One", 2, 12), is(false));
+        assertThat(map.replace("One", 1, 11), is(true));
+        assertThat(map.replace("Four", 4), nullValue());
+        assertThat(map.merge("One", 1, Integer::sum), is(12));
+        assertThat(map.size(), is(4));
+    }
+
+    /**
+     * Random operations give the same results as HashMap, while the number
+     * of buckets grows.
+     */
+    @Test
+    public void testRandomOperations() {
+        MyLockFreeHashMap<Integer, Integer> mine = new MyLockFreeHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            Integer key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertThat(mine.remove(key), is(expected.remove(key)));
+            } else {
+                assertThat(mine.put(key, i), is(expected.put(key, i)));
+            }
+        }
+        assertThat(mine.size(), is(expected.size()));
+        assertThat(mine.entrySet(), is(expected.entrySet()));
+        assertThat(mine.bucketCount(), greaterThan(1000));
+    }
+
+    /**
+     * Returns the terms of a page, each repeated as many times as it
+     * appears, in random order.  Word frequencies are Zipfian, so a few
+     * terms like "the" get most of the traffic.
+     */
+    private static List<String> termStream(TermCounter counter) {
+        List<String> terms = new ArrayList<>();
+        for (String term : counter.keySet()) {
+            for (int i = 0; i < counter.get(term); i++) {
+                terms.add(term);
+            }
+        }
+        Collections.shuffle(terms, new Random(17));
+        return terms;
+    }
+
+    /**
+     * Threads count the terms of a page with merge while another thread
+     * keeps adding and removing keys, and no counts are lost.
+     */
+    @Test
+    public void testConcurrentTermCounts() throws IOException, InterruptedException {
+        String url = "https://en.wikipedia.org/wiki/Java_(programming_language)";
+        Elements paragraphs = new WikiFetcher().readWikipedia(url);
+        TermCounter counter = new TermCounter(url);
+        counter.processElements(paragraphs);
+        final List<String> terms = termStream(counter);
+        final int rounds = 10;
+
+        final MyLockFreeHashMap<String, Integer> counts = new MyLockFreeHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] workers = new Thread[THREADS + 1];
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * terms.size() / THREADS;
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int r = 0; r < rounds; r++) {
+                        for (int i = 0; i < terms.size(); i++) {
+                            String term = terms.get((offset + i) % terms.size());
+                            counts.merge(term, 1, Integer::sum);
+                        }
+                    }
+                }
+            };
+        }
+        // churns keys that are not terms, so removal races with the merges
+        workers[THREADS] = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 50000; i++) {
+                    String key = "churn " + (i % 100);
+                    if (counts.putIfAbsent(key, i) == null && counts.remove(key) == null) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }
+        };
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertThat(errors.get(), is(0));
+        for (String term : counter.keySet()) {
+            assertThat(counts.get(term), is(counter.get(term) * rounds * THREADS));
+        }
+        assertThat(counts.size(), is(counter.keySet().size()));
+    }
+
+    /**
+     * Threads race to add and remove the same few keys.  Each successful
+     * putIfAbsent is matched by exactly one successful remove.
+     */
+    @Test
+    public void testHotKeys() throws InterruptedException {
+        final MyLockFreeHashMap<Integer, Integer> hot = new MyLockFreeHashMap<>();
+        final AtomicInteger added = new AtomicInteger();
+        final AtomicInteger removed = new AtomicInteger();
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        Integer key = random.nextInt(4);
+                        if (random.nextBoolean()) {
+                            if (hot.putIfAbsent(key, i) == null) {
+                                added.incrementAndGet();
+                            }
+                        } else if (hot.remove(key) != null) {
+                            removed.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertThat(added.get() - removed.get(), is(hot.size()));
+        assertThat(hot.keySet().size(), is(hot.size()));
+    }
+}
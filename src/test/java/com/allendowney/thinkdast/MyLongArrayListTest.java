@@ -0,0 +1,102 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyLongArrayListTest {
+
+    protected MyLongArrayList mylist;
+
+    @Before
+    public void setUp() {
+        mylist = new MyLongArrayList();
+        mylist.add(1L);
+        mylist.add(2L);
+        mylist.add(3L);
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#add(long)}.
+     */
+    @Test
+    public void testAdd() {
+        for (long i = 4; i < 20; i++) {
+            mylist.add(i << 32);
+        }
+        assertThat(mylist.size(), is(19));
+        assertThat(mylist.get(18), is(19L << 32));
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#add(int, long)}.
+     */
+    @Test
+    public void testAddIntLong() {
+        mylist.add(1, 5L);
+        mylist.add(0, 6L);
+        mylist.add(5, 7L);
+        assertThat(mylist.toArray(), is(new long[]{6, 1, 5, 2, 3, 7}));
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.add(-1, 0L);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#indexOf(long)}.
+     */
+    @Test
+    public void testIndexOf() {
+        mylist.add(2L);
+        assertThat(mylist.indexOf(2L), is(1));
+        assertThat(mylist.lastIndexOf(2L), is(3));
+        assertThat(mylist.indexOf(4L), is(-1));
+        assertThat(mylist.contains(3L), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#remove(int)}.
+     */
+    @Test
+    public void testRemove() {
+        assertThat(mylist.remove(0), is(1L));
+        assertThat(mylist.removeValue(3L), equalTo(true));
+        assertThat(mylist.toArray(), is(new long[]{2}));
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                mylist.remove(1);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#set(int, long)}.
+     */
+    @Test
+    public void testSet() {
+        assertThat(mylist.set(2, Long.MAX_VALUE), is(3L));
+        assertThat(mylist.get(2), is(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test method for {@link MyLongArrayList#sort()}.
+     */
+    @Test
+    public void testSort() {
+        mylist.add(0, Long.MAX_VALUE);
+        mylist.add(Long.MIN_VALUE);
+        mylist.sort();
+        assertThat(mylist.toArray(), is(new long[]{Long.MIN_VALUE, 1, 2, 3, Long.MAX_VALUE}));
+    }
+}
@@ -0,0 +1,166 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyPersistentVectorTest {
+    // big enough to need three levels in the trie
+    private static final int BIG = 40000;
+
+    private MyPersistentVector<Integer> vector;
+
+    @Before
+    public void setUp() {
+        vector = MyPersistentVector.<Integer>empty().plus(1).plus(2).plus(3);
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector#plus(Object)}.
+     */
+    @Test
+    public void testPlus() {
+        MyPersistentVector<Integer> v = MyPersistentVector.empty();
+        for (int i = 0; i < BIG; i++) {
+            v = v.plus(i);
+        }
+        assertThat(v.size(), is(BIG));
+        for (int i = 0; i < BIG; i++) {
+            assertThat(v.get(i), is(i));
+        }
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector#plus(Object)} leaving old versions unchanged.
+     */
+    @Test
+    public void testPlusSharesStructure() {
+        MyPersistentVector<Integer> v4 = vector.plus(4);
+        MyPersistentVector<Integer> v5 = vector.plus(5);
+        assertThat(vector.toArray(), is(new Object[]{1, 2, 3}));
+        assertThat(v4.toArray(), is(new Object[]{1, 2, 3, 4}));
+        assertThat(v5.toArray(), is(new Object[]{1, 2, 3, 5}));
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector#with(int, Object)}.
+     */
+    @Test
+    public void testWith() {
+        MyPersistentVector<Integer> v = MyPersistentVector.empty();
+        for (int i = 0; i < BIG; i++) {
+            v = v.plus(i);
+        }
+        MyPersistentVector<Integer> w = v.with(5, -5).with(BIG - 1, -1).with(33 * 32, 0);
+        assertThat(w.get(5), is(-5));
+        assertThat(w.get(BIG - 1), is(-1));
+        assertThat(w.get(33 * 32), is(0));
+        assertThat(v.get(5), is(5));
+        assertThat(v.get(BIG - 1), is(BIG - 1));
+        assertThat(v.get(33 * 32), is(33 * 32));
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                vector.with(3, 0);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector#pop()}.
+     */
+    @Test
+    public void testPop() {
+        MyPersistentVector.Builder<Integer> builder = MyPersistentVector.builder();
+        for (int i = 0; i < BIG; i++) {
+            builder.add(i);
+        }
+        MyPersistentVector<Integer> v = builder.build();
+        for (int i = BIG - 1; i >= 0; i--) {
+            assertThat(v.get(i), is(i));
+            v = v.pop();
+            assertThat(v.size(), is(i));
+        }
+        assertThat(v.isEmpty(), equalTo(true));
+        assertThat(v.plus(7).get(0), is(7));
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector.Builder}.
+     */
+    @Test
+    public void testBuilder() {
+        MyPersistentVector.Builder<Integer> builder = vector.toBuilder();
+        List<Integer> expected = new ArrayList<>(vector);
+        for (int i = 0; i < BIG; i++) {
+            builder.add(i);
+            expected.add(i);
+        }
+        builder.set(0, -1).set(BIG, -2);
+        expected.set(0, -1);
+        expected.set(BIG, -2);
+        assertThat(builder.get(BIG), is(-2));
+
+        final MyPersistentVector.Builder<Integer> built = builder;
+        MyPersistentVector<Integer> v = built.build();
+        assertThat(v.toArray(), is(expected.toArray()));
+        assertThat(vector.toArray(), is(new Object[]{1, 2, 3}));
+
+        // the builder is finished, and the vector does not change
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                built.add(0);
+            }
+        });
+        MyPersistentVector.Builder<Integer> builder2 = v.toBuilder();
+        builder2.set(1, 100);
+        assertThat(v.get(1), is(2));
+        assertThat(builder2.build().get(1), is(100));
+    }
+
+    /**
+     * Test method for {@link MyPersistentVector#iterator()}.
+     */
+    @Test
+    public void testIterator() {
+        MyPersistentVector<Integer> v = MyPersistentVector.<Integer>builder().addAll(vector).addAll(vector).build();
+        for (int i = 0; i < 100; i++) {
+            v = v.plus(i);
+        }
+        Iterator<Integer> iter = v.iterator();
+        for (int i = 0; i < v.size(); i++) {
+            assertThat(iter.next(), is(v.get(i)));
+        }
+        assertThat(iter.hasNext(), equalTo(false));
+    }
+
+    /**
+     * The List mutators are not supported.
+     */
+    @Test
+    public void testImmutable() {
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                vector.add(4);
+            }
+        });
+        assertThrows(UnsupportedOperationException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                vector.iterator().remove();
+            }
+        });
+    }
+}
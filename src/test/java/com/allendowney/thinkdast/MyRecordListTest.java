@@ -0,0 +1,150 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyRecordListTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MyRecordList records;
+
+    @Before
+    public void setUp() {
+        // small chunks, so that the tests cross chunk boundaries
+        records = new MyRecordList(2, 8);
+        for (int i = 0; i < 100; i++) {
+            records.add(i, i * i);
+        }
+    }
+
+    /**
+     * Test method for {@link MyRecordList#getInt(int, int)}.
+     */
+    @Test
+    public void testGetInt() {
+        assertThat(records.size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(records.getInt(i, 0), is(i));
+            assertThat(records.getInt(i, 1), is(i * i));
+        }
+
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                records.getInt(100, 0);
+            }
+        });
+        assertThrows(IndexOutOfBoundsException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                records.getInt(0, 2);
+            }
+        });
+    }
+
+    /**
+     * Test method for {@link MyRecordList#add()}.
+     */
+    @Test
+    public void testAddClearsReusedRecords() {
+        records.clear();
+        assertThat(records.isEmpty(), equalTo(true));
+        int record = records.add();
+        assertThat(record, is(0));
+        assertThat(records.getInt(0, 1), is(0));
+
+        records.setInt(0, 1, -7);
+        assertThat(records.getInt(0, 1), is(-7));
+    }
+
+    /**
+     * Test method for {@link MyRecordList#sortByField(int)}.
+     */
+    @Test
+    public void testSortByField() {
+        Random random = new Random(17);
+        MyRecordList list = new MyRecordList(3, 64);
+        int[] keys = new int[5000];
+        for (int i = 0; i < keys.length; i++) {
+            // lots of duplicates, and both signs
+            keys[i] = random.nextInt(1000) - 500;
+            int record = list.add();
+            list.setInt(record, 0, i);
+            list.setInt(record, 1, keys[i]);
+            list.setInt(record, 2, keys[i] * 2);
+        }
+        list.sortByField(1);
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            assertThat(list.getInt(i, 1), is(keys[i]));
+            // the other fields move with the key
+            assertThat(list.getInt(i, 2), is(keys[i] * 2));
+        }
+    }
+
+    /**
+     * Test method for {@link MyRecordList#cursor()}.
+     */
+    @Test
+    public void testCursor() {
+        MyRecordList.Cursor cursor = records.cursor();
+        long total = 0;
+        int count = 0;
+        while (cursor.next()) {
+            assertThat(cursor.index(), is(count));
+            total += cursor.getInt(1);
+            cursor.setInt(0, -cursor.getInt(0));
+            count++;
+        }
+        assertThat(count, is(100));
+        assertThat(total, is(328350L));
+        assertThat(records.getInt(42, 0), is(-42));
+    }
+
+    /**
+     * Test method for {@link MyRecordList#asList()}.
+     */
+    @Test
+    public void testAsList() {
+        List<int[]> list = records.asList();
+        assertThat(list.size(), is(100));
+        assertThat(list.get(9), is(new int[]{9, 81}));
+
+        list.add(new int[]{-1, -2});
+        assertThat(records.size(), is(101));
+        assertThat(records.getInt(100, 1), is(-2));
+    }
+
+    /**
+     * Test method for {@link MyRecordList#mapped(Path, int, int)}.
+     */
+    @Test
+    public void testMapped() throws IOException {
+        Path path = folder.newFile("records.bin").toPath();
+        try (MyRecordList list = MyRecordList.mapped(path, 2, 16)) {
+            for (int i = 0; i < 100; i++) {
+                list.add(100 - i, i);
+            }
+            list.sortByField(0);
+            assertThat(list.getInt(0, 0), is(1));
+            assertThat(list.getInt(0, 1), is(99));
+            assertThat(list.getInt(99, 0), is(100));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MyTieredListTest extends MyArrayListTest {
+
+    @Before
+    public void setUp() {
+        list = new ArrayList<>();
+        list.add(1);
+        list.add(2);
+        list.add(3);
+
+        mylist = new MyTieredList<>();
+        mylist.addAll(list);
+    }
+
+    /**
+     * Grows the list through several block sizes and shrinks it again,
+     * checking it against ArrayList along the way.
+     */
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(17);
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> actual = new MyTieredList<>();
+        for (int i = 0; i < 20000; i++) {
+            int index = random.nextInt(expected.size() + 1);
+            expected.add(index, i);
+            actual.add(index, i);
+        }
+        assertThat(actual.toArray(), is(expected.toArray()));
+
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(expected.size());
+            assertThat(actual.set(index, -i), is(expected.set(index, -i)));
+        }
+        while (expected.size() > 10) {
+            int index = random.nextInt(expected.size());
+            assertThat(actual.remove(index), is(expected.remove(index)));
+        }
+        assertThat(actual.toArray(), is(expected.toArray()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i), is(expected.get(i)));
+        }
+    }
+}
@@ -4,13 +4,22 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -167,7 +176,225 @@ public class MyTreeMapTest {
      */
     @Test
     public void testRemove() {
-        // nothing to test, since this method is not implemented
+        // a leaf, a node with one child, a node with two children, the root
+        assertThat(map.remove("04"), is(4));
+        assertThat(map.remove("10"), is(10));
+        assertThat(map.remove("03"), is(3));
+        assertThat(map.remove("08"), is(8));
+        assertThat(map.remove("05"), nullValue());
+        assertThat(map.size(), is(5));
+        assertThat(new ArrayList<>(map.keySet()), is(List.of("01", "06", "07", "13", "14")));
+        assertThat(map.get("06"), is(6));
+        assertThat(map.get("03"), nullValue());
+    }
+
+    /**
+     * Removing through an iterator removes from the map, and the iterator
+     * goes on from the next key.
+     */
+    @Test
+    public void testIteratorRemove() {
+        Iterator<String> it = map.keySet().iterator();
+        List<String> seen = new ArrayList<>();
+        while (it.hasNext()) {
+            String key = it.next();
+            seen.add(key);
+            if (Integer.parseInt(key) % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertThat(seen, contains("01", "03", "04", "06", "07", "08", "10", "13", "14"));
+        assertThat(new ArrayList<>(map.keySet()), is(List.of("01", "03", "07", "13")));
+        assertThat(map.size(), is(4));
+    }
+
+    /**
+     * Test method for {@link MyTreeMap#floorKey(Object)} and friends.
+     */
+    @Test
+    public void testNavigation() {
+        assertThat(map.floorKey("05"), is("04"));
+        assertThat(map.floorKey("06"), is("06"));
+        assertThat(map.lowerKey("06"), is("04"));
+        assertThat(map.ceilingKey("11"), is("13"));
+        assertThat(map.ceilingKey("13"), is("13"));
+        assertThat(map.higherKey("13"), is("14"));
+        assertThat(map.higherKey("14"), nullValue());
+        assertThat(map.lowerKey("01"), nullValue());
+        assertThat(map.firstKey(), is("01"));
+        assertThat(map.lastEntry().getValue(), is(14));
+
+        assertThat(map.pollFirstEntry().getKey(), is("01"));
+        assertThat(map.pollLastEntry().getKey(), is("14"));
+        assertThat(map.size(), is(7));
+        assertThat(map.firstKey(), is("03"));
+    }
+
+    /**
+     * Test method for {@link MyTreeMap#subMap(Object, boolean, Object, boolean)}.
+     */
+    @Test
+    public void testSubMap() {
+        NavigableMap<String, Integer> sub = map.subMap("03", false, "10", true);
+        assertThat(new ArrayList<>(sub.keySet()), is(List.of("04", "06", "07", "08", "10")));
+        assertThat(sub.size(), is(5));
+        assertThat(sub.containsKey("03"), is(false));
+        assertThat(sub.get("14"), nullValue());
+        assertThat(sub.firstKey(), is("04"));
+        assertThat(sub.floorKey("02"), nullValue());
+        assertThat(sub.ceilingKey("02"), is("04"));
+        assertThat(sub.higherKey("10"), nullValue());
+
+        // the view reads and writes through
+        sub.put("05", 5);
+        assertThat(map.get("05"), is(5));
+        map.put("09", 9);
+        assertThat(sub.size(), is(7));
+        sub.remove("06");
+        assertThat(map.containsKey("06"), is(false));
+
+        NavigableMap<String, Integer> descending = sub.descendingMap();
+        assertThat(new ArrayList<>(descending.keySet()), is(List.of("10", "09", "08", "07", "05", "04")));
+        assertThat(descending.firstKey(), is("10"));
+        assertThat(descending.higherKey("08"), is("07"));
+        assertThat(new ArrayList<>(descending.headMap("07").keySet()), is(List.of("10", "09", "08")));
+
+        sub.clear();
+        assertThat(new ArrayList<>(map.keySet()), is(List.of("01", "03", "13", "14")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubMapOutOfRange() {
+        map.headMap("05").put("06", 6);
+    }
+
+    /**
+     * Autocomplete: the keys that start with a prefix are the ones in the
+     * tail map up to the first key that doesn't.
+     */
+    @Test
+    public void testPrefixScan() {
+        MyTreeMap<String, Integer> terms = new MyTreeMap<>(true);
+        for (String term : new String[]{"java", "javadoc", "javascript", "jar", "jit", "ja", "kotlin"}) {
+            terms.put(term, term.length());
+        }
+        List<String> completions = new ArrayList<>();
+        for (String term : terms.tailMap("jav").keySet()) {
+            if (!term.startsWith("jav")) {
+                break;
+            }
+            completions.add(term);
+        }
+        assertThat(completions, contains("java", "javadoc", "javascript"));
+        assertThat(terms.subMap("ja", "jb").size(), is(5));
+    }
+
+    /**
+     * Test method for {@link MyTreeMap#select(int)} and {@link MyTreeMap#rank(Object)}.
+     */
+    @Test
+    public void testSelectAndRank() {
+        List<String> keys = List.of("01", "03", "04", "06", "07", "08", "10", "13", "14");
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(map.select(i), is(keys.get(i)));
+            assertThat(map.rank(keys.get(i)), is(i));
+        }
+        assertThat(map.rank("00"), is(0));
+        assertThat(map.rank("05"), is(3));
+        assertThat(map.rank("99"), is(9));
+        assertThat(map.countInRange("02", "08"), is(5));
+        assertThat(map.countInRange("03", "03"), is(1));
+        assertThat(map.countInRange("09", "02"), is(0));
+
+        map.remove("06");
+        map.put("05", 5);
+        assertThat(map.select(3), is("05"));
+        assertThat(map.rank("07"), is(4));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() {
+        map.select(9);
+    }
+
+    /**
+     * The subtree counts stay right through rotations and removals, so
+     * select and rank agree with a sorted list, and countInRange with
+     * java.util.TreeMap.
+     */
+    @Test
+    public void testOrderStatistics() {
+        for (boolean balanced : new boolean[]{false, true}) {
+            MyTreeMap<Integer, Integer> tree = new MyTreeMap<>(balanced);
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            Random random = new Random(11);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(5000);
+                if (random.nextInt(4) == 0) {
+                    tree.remove(key);
+                    expected.remove(key);
+                } else {
+                    tree.put(key, i);
+                    expected.put(key, i);
+                }
+            }
+            List<Integer> sorted = new ArrayList<>(expected.keySet());
+            for (int i = 0; i < sorted.size(); i++) {
+                assertThat(tree.select(i), is(sorted.get(i)));
+                assertThat(tree.rank(sorted.get(i)), is(i));
+            }
+            for (int i = 0; i < 500; i++) {
+                int lo = random.nextInt(5000);
+                int hi = lo + random.nextInt(1000);
+                assertThat(tree.countInRange(lo, hi), is(expected.subMap(lo, true, hi, true).size()));
+                assertThat(tree.rank(lo), is(expected.headMap(lo).size()));
+            }
+        }
+    }
+
+    /**
+     * Random puts and removes, in both modes, agree with java.util.TreeMap,
+     * including the range views.
+     */
+    @Test
+    public void testAgainstTreeMap() {
+        for (boolean balanced : new boolean[]{false, true}) {
+            MyTreeMap<Integer, Integer> tree = new MyTreeMap<>(balanced);
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            Random random = new Random(7);
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(2000);
+                if (random.nextInt(3) == 0) {
+                    assertThat(tree.remove(key), is(expected.remove(key)));
+                } else {
+                    assertThat(tree.put(key, i), is(expected.put(key, i)));
+                }
+            }
+            assertThat(tree.size(), is(expected.size()));
+            if (balanced) {
+                assertThat(tree.height() <= 1.44 * Math.log(tree.size() + 2) / Math.log(2), is(true));
+            }
+            for (int i = 0; i < 200; i++) {
+                int key = random.nextInt(2100) - 50;
+                assertThat(tree.floorKey(key), is(expected.floorKey(key)));
+                assertThat(tree.lowerKey(key), is(expected.lowerKey(key)));
+                assertThat(tree.ceilingKey(key), is(expected.ceilingKey(key)));
+                assertThat(tree.higherKey(key), is(expected.higherKey(key)));
+
+                int to = key + random.nextInt(300);
+                boolean fromInclusive = random.nextBoolean();
+                boolean toInclusive = random.nextBoolean();
+                NavigableMap<Integer, Integer> sub = tree.subMap(key, fromInclusive, to, toInclusive);
+                NavigableMap<Integer, Integer> expectedSub = expected.subMap(key, fromInclusive, to, toInclusive);
+                assertThat(new ArrayList<>(sub.entrySet()), is(new ArrayList<>(expectedSub.entrySet())));
+                assertThat(new ArrayList<>(sub.descendingKeySet()), is(new ArrayList<>(expectedSub.descendingKeySet())));
+                assertThat(sub.size(), is(expectedSub.size()));
+                assertThat(new ArrayList<>(tree.headMap(key, fromInclusive).descendingMap().keySet()),
+                        is(new ArrayList<>(expected.headMap(key, fromInclusive).descendingMap().keySet())));
+                assertThat(new ArrayList<>(tree.tailMap(to, toInclusive).values()),
+                        is(new ArrayList<>(expected.tailMap(to, toInclusive).values())));
+            }
+        }
     }
 
     /**
@@ -188,4 +415,149 @@ public class MyTreeMapTest {
         assertThat(keySet.contains(3), is(true));
         assertThat(keySet.contains(5), is(false));
     }
+
+    /**
+     * Test method for {@link MyTreeMap#entrySet()}.
+     */
+    @Test
+    public void testEntrySet() {
+        Set<Map.Entry<String, Integer>> entries = map.entrySet();
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            keys.add(entry.getKey());
+            assertThat(entry.getValue(), is(Integer.parseInt(entry.getKey())));
+        }
+        List<String> sorted = new ArrayList<>(keys);
+        Collections.sort(sorted);
+        assertThat(keys, is(sorted));
+
+        map.put("20", 20);
+        assertThat(entries.size(), is(10));
+        assertThat(map.values().size(), is(10));
+        assertThat(entries.contains(new AbstractMap.SimpleEntry<>("20", 20)), is(true));
+        assertThat(entries.contains(new AbstractMap.SimpleEntry<>("20", 21)), is(false));
+    }
+
+    /**
+     * The view iterators fail fast if a key is added.
+     */
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorFailsFast() {
+        for (String key : map.keySet()) {
+            map.put(key + "x", 0);
+        }
+    }
+
+    /**
+     * Sorted keys make an unbalanced tree as deep as it is big, which still
+     * works, because put and get don't recurse.
+     */
+    @Test
+    public void testUnbalancedSortedKeys() {
+        MyTreeMap<Integer, Integer> tree = new MyTreeMap<>();
+        int n = 20000;
+        for (int i = 0; i < n; i++) {
+            tree.put(i, i);
+        }
+        assertThat(tree.height(), is(n));
+        assertThat(tree.get(n - 1), is(n - 1));
+        assertThat(tree.containsValue(n - 1), is(true));
+    }
+
+    /**
+     * A balanced tree stays within the AVL bound, whatever the order of the keys.
+     */
+    @Test
+    public void testBalanced() {
+        int n = 100000;
+        double bound = 1.44 * Math.log(n + 2) / Math.log(2);
+
+        MyTreeMap<Integer, Integer> sorted = new MyTreeMap<>(true);
+        MyTreeMap<Integer, Integer> reversed = new MyTreeMap<>(true);
+        for (int i = 0; i < n; i++) {
+            sorted.put(i, i);
+            reversed.put(n - i, i);
+        }
+        assertThat(sorted.size(), is(n));
+        assertThat(sorted.height() <= bound, is(true));
+        assertThat(reversed.height() <= bound, is(true));
+        assertThat(sorted.get(12345), is(12345));
+        assertThat(sorted.get(n), nullValue());
+
+        MyTreeMap<Integer, Integer> shuffled = new MyTreeMap<>(true);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            int key = random.nextInt(n);
+            assertThat(shuffled.put(key, i), is(expected.put(key, i)));
+        }
+        assertThat(shuffled.size(), is(expected.size()));
+        assertThat(shuffled.height() <= 1.44 * Math.log(shuffled.size() + 2) / Math.log(2), is(true));
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertThat(shuffled.get(entry.getKey()), is(entry.getValue()));
+        }
+        List<Integer> keys = new ArrayList<>(shuffled.keySet());
+        List<Integer> sortedKeys = new ArrayList<>(expected.keySet());
+        Collections.sort(sortedKeys);
+        assertThat(keys, is(sortedKeys));
+    }
+
+    /**
+     * A balanced map works from a tree given by setTree, and balances it
+     * as keys are added.
+     */
+    @Test
+    public void testBalancedSetTree() {
+        MyTreeMap<String, Integer> balanced = new MyTreeMap<>(true);
+        MyTreeMap<String, Integer>.Node node10 = balanced.makeNode("10", 10);
+        MyTreeMap<String, Integer>.Node node14 = balanced.makeNode("14", 14);
+        MyTreeMap<String, Integer>.Node node13 = balanced.makeNode("13", 13);
+        node10.right = node14;
+        node14.left = node13;
+        balanced.setTree(node10, 3);
+        assertThat(balanced.height(), is(3));
+
+        balanced.put("15", 15);
+        balanced.put("16", 16);
+        assertThat(balanced.height(), is(3));
+        assertThat(new ArrayList<>(balanced.keySet()), is(List.of("10", "13", "14", "15", "16")));
+    }
+
+    /**
+     * Test method for {@link MyTreeMap#entrySpliterator()}.
+     */
+    @Test
+    public void testEntrySpliterator() {
+        Spliterator<Map.Entry<String, Integer>> rest = map.entrySpliterator();
+        Spliterator<Map.Entry<String, Integer>> prefix = rest.trySplit();
+
+        // the first split hands off the left subtree of the root
+        List<String> keys = new ArrayList<>();
+        prefix.forEachRemaining(e -> keys.add(e.getKey()));
+        assertThat(keys, contains("01", "03", "04", "06", "07"));
+        keys.clear();
+        rest.forEachRemaining(e -> keys.add(e.getKey()));
+        assertThat(keys, contains("08", "10", "13", "14"));
+    }
+
+    /**
+     * A parallel stream over a bigger tree sees every entry once, in order.
+     */
+    @Test
+    public void testEntrySpliteratorParallel() {
+        map.clear();
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers, new Random(17));
+        for (Integer i : numbers) {
+            map.put(String.format("%05d", i), i);
+        }
+        List<Integer> values = StreamSupport.stream(map.entrySpliterator(), true)
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        Collections.sort(numbers);
+        assertThat(values, is(numbers));
+    }
 }
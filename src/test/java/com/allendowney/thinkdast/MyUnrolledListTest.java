@@ -0,0 +1,161 @@
+package com.allendowney.thinkdast;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.function.ThrowingRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class MyUnrolledListTest extends MyArrayListTest {
+
+    @Before
+    public void setUp() {
+        list = new ArrayList<>();
+        list.add(1);
+        list.add(2);
+        list.add(3);
+
+        // small nodes, so that the tests split and merge them
+        mylist = new MyUnrolledList<>(4);
+        mylist.addAll(list);
+    }
+
+    /**
+     * Runs a long random sequence of inserts and removes against ArrayList.
+     */
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(17);
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> actual = new MyUnrolledList<>(4);
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                actual.add(index, i);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                assertThat(actual.remove(index), is(expected.remove(index)));
+            } else {
+                int index = random.nextInt(expected.size());
+                assertThat(actual.set(index, -i), is(expected.set(index, -i)));
+            }
+        }
+        assertThat(actual.toArray(), is(expected.toArray()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i), is(expected.get(i)));
+        }
+    }
+
+    /**
+     * Adds and removes through a ListIterator across node boundaries.
+     */
+    @Test
+    public void testListIteratorAcrossNodes() {
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> actual = new MyUnrolledList<>(4);
+        for (int i = 0; i < 50; i++) {
+            expected.add(i);
+            actual.add(i);
+        }
+        ListIterator<Integer> e = expected.listIterator();
+        ListIterator<Integer> a = actual.listIterator();
+        while (e.hasNext()) {
+            int value = e.next();
+            assertThat(a.next(), is(value));
+            if (value % 3 == 0) {
+                e.remove();
+                a.remove();
+            } else if (value % 3 == 1) {
+                e.add(100 + value);
+                a.add(100 + value);
+            }
+            assertThat(a.nextIndex(), is(e.nextIndex()));
+        }
+        while (e.hasPrevious()) {
+            int value = e.previous();
+            assertThat(a.previous(), is(value));
+            if (value >= 100) {
+                e.remove();
+                a.remove();
+            }
+        }
+        assertThat(actual.toArray(), is(expected.toArray()));
+    }
+
+    /**
+     * Test method for {@link MyUnrolledList#removeIf(Predicate)} over many nodes.
+     */
+    @Test
+    public void testRemoveIfCompacts() {
+        List<Integer> expected = new ArrayList<>();
+        List<Integer> actual = new MyUnrolledList<>(4);
+        for (int i = 0; i < 50; i++) {
+            expected.add(i);
+            actual.add(i);
+        }
+        Predicate<Integer> filter = new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer element) {
+                return element % 5 != 0 && element < 45;
+            }
+        };
+        expected.removeIf(filter);
+        actual.removeIf(filter);
+        assertThat(actual.toArray(), is(expected.toArray()));
+
+        actual.add(3, 99);
+        expected.add(3, 99);
+        actual.add(99);
+        expected.add(99);
+        assertThat(actual.toArray(), is(expected.toArray()));
+    }
+
+    /**
+     * If the filter throws in a later node, the nodes stay consistent: no
+     * element is lost or repeated, and the list keeps working.
+     */
+    @Test
+    public void testRemoveIfThrowsAcrossNodes() {
+        final List<Integer> actual = new MyUnrolledList<>(4);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            actual.add(i);
+            if (i % 2 == 0 || i >= 31) {
+                expected.add(i);
+            }
+        }
+        assertThrows(IllegalStateException.class, new ThrowingRunnable() {
+            @Override
+            public void run() {
+                actual.removeIf(new Predicate<Integer>() {
+                    @Override
+                    public boolean test(Integer element) {
+                        if (element == 31) {
+                            throw new IllegalStateException();
+                        }
+                        return element % 2 == 1;
+                    }
+                });
+            }
+        });
+        assertThat(actual.size(), is(expected.size()));
+        assertThat(actual.toArray(), is(expected.toArray()));
+
+        actual.add(7, 99);
+        expected.add(7, 99);
+        actual.add(98);
+        expected.add(98);
+        assertThat(actual.toArray(), is(expected.toArray()));
+        assertThat(actual.get(actual.size() - 1), is(98));
+    }
+}